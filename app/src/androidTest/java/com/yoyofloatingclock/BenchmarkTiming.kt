@@ -0,0 +1,18 @@
+package com.yoyofloatingclock
+
+import android.os.SystemClock
+
+/**
+ * 基准测试共用的计时：先预热，再运行runs次取中位数，单次抖动不会影响结果
+ */
+internal fun medianNanos(runs: Int, warmup: Int = 3, block: () -> Unit): Long {
+    repeat(warmup) { block() }
+    val samples = LongArray(runs)
+    for (i in 0 until runs) {
+        val start = SystemClock.elapsedRealtimeNanos()
+        block()
+        samples[i] = SystemClock.elapsedRealtimeNanos() - start
+    }
+    samples.sort()
+    return samples[runs / 2]
+}
@@ -0,0 +1,80 @@
+package com.yoyofloatingclock
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 20×20布局的点击命中检测：逐个格子的线性扫描 vs CellHitIndex给出候选再确认边界。
+ * 每种做法跑若干轮取中位数。
+ */
+@RunWith(AndroidJUnit4::class)
+class CellHitIndexBenchmark {
+
+    private fun uniformGrid(rows: Int, columns: Int): IntArray {
+        val spans = IntArray(rows * columns * 4)
+        for (row in 0 until rows) {
+            for (column in 0 until columns) {
+                val i = (row * columns + column) * 4
+                spans[i] = row
+                spans[i + 1] = row + 1
+                spans[i + 2] = column
+                spans[i + 3] = column + 1
+            }
+        }
+        return spans
+    }
+
+    private fun linearScan(rects: FloatArray, x: Float, y: Float): Int {
+        for (i in rects.indices step 4) {
+            if (x >= rects[i] && x < rects[i + 2] && y >= rects[i + 1] && y < rects[i + 3]) {
+                return i / 4
+            }
+        }
+        return -1
+    }
+
+    private fun indexed(index: CellHitIndex, rects: FloatArray, x: Float, y: Float): Int {
+        val candidate = index.findCandidate(x, y)
+        if (candidate < 0) return -1
+        val i = candidate * 4
+        return if (x >= rects[i] && x < rects[i + 2] && y >= rects[i + 1] && y < rects[i + 3]) candidate else -1
+    }
+
+    @Test
+    fun indexBeatsLinearScan() {
+        val spans = uniformGrid(20, 20)
+        val rects = PackedLayout(spans).getBounds(SIZE, SIZE, SPACING)
+        val index = CellHitIndex(spans, SIZE.toFloat(), SIZE.toFloat(), SPACING.toFloat())
+        val random = Random(11)
+        val points = FloatArray(LOOKUPS * 2) { random.nextFloat() * SIZE }
+
+        var linearSink = 0
+        var indexSink = 0
+        val linearNanos = medianNanos(RUNS) {
+            for (i in points.indices step 2) linearSink += linearScan(rects, points[i], points[i + 1])
+        }
+        val indexNanos = medianNanos(RUNS) {
+            for (i in points.indices step 2) indexSink += indexed(index, rects, points[i], points[i + 1])
+        }
+
+        Log.i("CellHitIndex", String.format("20x20命中检测: 线性扫描 %.1f ns/次, 索引 %.1f ns/次",
+            linearNanos / LOOKUPS.toDouble(), indexNanos / LOOKUPS.toDouble()))
+        // 两种做法命中的格子相同
+        assertEquals(linearSink, indexSink)
+        // 400个格子平均要比较约200个矩形，索引只查一个候选；只要求快一倍，留足余量避免设备抖动造成误报
+        assertTrue("线性扫描 ${linearNanos}ns / 索引 ${indexNanos}ns", indexNanos * 2 < linearNanos)
+    }
+
+    private companion object {
+        const val SIZE = 1080
+        const val SPACING = 10
+        const val LOOKUPS = 100_000
+        const val RUNS = 9
+    }
+}
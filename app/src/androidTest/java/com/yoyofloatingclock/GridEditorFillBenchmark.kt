@@ -0,0 +1,36 @@
+package com.yoyofloatingclock
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+
+/**
+ * 32×32网格矩形填充的耗时：拖动行列数时每次变化都会重新填充，要在一帧（16ms）内完成。
+ * 跑若干轮取中位数。
+ */
+@RunWith(AndroidJUnit4::class)
+class GridEditorFillBenchmark {
+
+    @Test
+    fun rectangleFillFitsInOneFrame() {
+        val model = GridEditorModel(GridEditorModel.MAX_SIZE, GridEditorModel.MAX_SIZE)
+
+        val nanos = medianNanos(RUNS, warmup = 10) {
+            model.reset()
+            model.autoFillRectangles(20, 2f)
+        }
+        val millis = nanos / 1_000_000.0
+
+        Log.i("GridEditorFill", String.format("32×32网格矩形填充耗时 %.2f ms, %d格", millis, model.cellCount))
+        assertTrue(model.isFull)
+        assertTrue("填充耗时 $millis ms", millis < 16)
+    }
+
+    private companion object {
+        const val RUNS = 15
+    }
+}
@@ -0,0 +1,84 @@
+package com.yoyofloatingclock
+
+import android.content.Intent
+import android.os.Parcel
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+
+/**
+ * 400格布局从编辑器传回拼图页面的开销：旧的Parcelable格子列表 vs LayoutRegistry令牌。
+ * 测量结果Intent经过Binder时的序列化大小，以及写入+读回的耗时。
+ */
+@RunWith(AndroidJUnit4::class)
+class LayoutHandoffBenchmark {
+
+    private val rounds = 200
+
+    private fun layout400(): PackedLayout {
+        val model = GridEditorModel(20, 20)
+        model.autoFill()
+        return model.toLayout()
+    }
+
+    /** 把Intent写入Parcel再读回，返回 (字节数, 平均微秒) */
+    private fun roundTrip(intent: Intent, read: (Intent) -> Unit): Pair<Int, Long> {
+        var size = 0
+        val start = SystemClock.elapsedRealtimeNanos()
+        repeat(rounds) {
+            val parcel = Parcel.obtain()
+            try {
+                intent.writeToParcel(parcel, 0)
+                size = parcel.dataSize()
+                parcel.setDataPosition(0)
+                val copy = Intent.CREATOR.createFromParcel(parcel)
+                copy.setExtrasClassLoader(GridCell::class.java.classLoader)
+                read(copy)
+            } finally {
+                parcel.recycle()
+            }
+        }
+        return size to (SystemClock.elapsedRealtimeNanos() - start) / rounds / 1000
+    }
+
+    @Test
+    fun tokenHandoff_isSmallAndPassesSameLayout() {
+        val layout = layout400()
+        assertEquals(400, layout.cellCount)
+
+        // 旧方式：每个格子一个Parcelable（含可空的RectF）
+        val cells = ArrayList<GridCell>()
+        for (cell in 0 until layout.cellCount) {
+            cells.add(GridCell(layout.getRowStart(cell), layout.getRowEnd(cell),
+                layout.getColStart(cell), layout.getColEnd(cell)))
+        }
+        val legacy = Intent()
+            .putExtra(LayoutEditorActivity.EXTRA_CELL_COUNT, cells.size)
+            .putParcelableArrayListExtra("grid_cells", cells)
+        val (legacySize, legacyMicros) = roundTrip(legacy) {
+            assertEquals(400, it.getParcelableArrayListExtra<GridCell>("grid_cells")!!.size)
+        }
+
+        // 新方式：只传令牌，布局按引用取回
+        val token = LayoutRegistry.register(layout)
+        val handoff = Intent()
+            .putExtra(LayoutEditorActivity.EXTRA_CELL_COUNT, layout.cellCount)
+            .putExtra(LayoutEditorActivity.EXTRA_LAYOUT_TOKEN, token)
+        val (tokenSize, tokenMicros) = roundTrip(handoff) {
+            assertEquals(token, it.getLongExtra(LayoutEditorActivity.EXTRA_LAYOUT_TOKEN, 0))
+        }
+
+        Log.i("LayoutHandoff", "400格: Parcelable列表 $legacySize 字节 / ${legacyMicros}us, " +
+            "令牌 $tokenSize 字节 / ${tokenMicros}us")
+        assertTrue("令牌Intent $tokenSize 字节", tokenSize < 512)
+        assertTrue(tokenSize * 10 < legacySize)
+
+        assertSame(layout, LayoutRegistry.take(token))
+        assertNull(LayoutRegistry.take(token))
+    }
+}
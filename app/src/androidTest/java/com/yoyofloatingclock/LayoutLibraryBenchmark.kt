@@ -0,0 +1,49 @@
+package com.yoyofloatingclock
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+import java.io.File
+
+/**
+ * 保存了1000个布局时读取列表的耗时：每次用新实例从索引文件读取，跑若干轮取中位数。
+ */
+@RunWith(AndroidJUnit4::class)
+class LayoutLibraryBenchmark {
+
+    private val directory = File(InstrumentationRegistry.getInstrumentation().targetContext.cacheDir,
+        "layout_library_benchmark")
+
+    @After
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun listsThousandLayoutsWithin50ms() {
+        directory.deleteRecursively()
+        val model = GridEditorModel(8, 8)
+        model.autoFill()
+        val layout = model.toLayout()
+        val library = LayoutLibrary(directory)
+        repeat(1000) { library.save("布局$it", layout) }
+
+        var count = 0
+        val nanos = medianNanos(RUNS) { count = LayoutLibrary(directory).list().size }
+        val millis = nanos / 1_000_000.0
+
+        Log.i("LayoutLibrary", String.format("读取1000个布局的列表耗时 %.2f ms", millis))
+        assertEquals(1000, count)
+        assertTrue("列表耗时 $millis ms", millis < 50)
+    }
+
+    private companion object {
+        const val RUNS = 9
+    }
+}
@@ -0,0 +1,36 @@
+package com.yoyofloatingclock
+
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 9张图片自动选择布局的耗时：批量导入时在后台求解，结果要在用户察觉之前出来。
+ * 跑若干轮取中位数。
+ */
+@RunWith(AndroidJUnit4::class)
+class LayoutSolverBenchmark {
+
+    @Test
+    fun solvesNinePhotosWithin50ms() {
+        val random = Random(5)
+        val aspects = FloatArray(9) { 0.4f + random.nextFloat() * 2f }
+
+        var result: LayoutSolver.Result? = null
+        val nanos = medianNanos(RUNS, warmup = 10) { result = LayoutSolver.solve(aspects, 1f) }
+        val millis = nanos / 1_000_000.0
+
+        Log.i("LayoutSolver", String.format("9张图片求解耗时 %.2f ms, 损失 %.4f", millis, result!!.cropLoss))
+        assertEquals(9, result!!.layout.cellCount)
+        assertTrue("求解耗时 $millis ms", millis < 50)
+    }
+
+    private companion object {
+        const val RUNS = 15
+    }
+}
@@ -0,0 +1,127 @@
+package com.yoyofloatingclock
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.os.SystemClock
+import android.util.Log
+import android.view.View
+import android.widget.ImageView
+import android.widget.LinearLayout
+import androidx.test.core.app.ActivityScenario
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+import java.io.File
+
+/**
+ * 拼图页面的打开耗时，以及布局选择列表改用预渲染缩略图前后的绘制开销。
+ * 打开耗时从启动Activity算到主线程空闲（首帧已绘制），分别测量缩略图缓存全空、
+ * 只有磁盘缓存、内存缓存命中三种情况。
+ */
+@RunWith(AndroidJUnit4::class)
+class PuzzleOpenBenchmark {
+
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+    private val context = instrumentation.targetContext
+    private val thumbnailDir = File(context.cacheDir, "layout_thumbnails")
+
+    /** 打开一次拼图页面，返回毫秒 */
+    private fun openMillis(): Long {
+        val start = SystemClock.uptimeMillis()
+        ActivityScenario.launch(PuzzleActivityEnhanced::class.java).use {
+            instrumentation.waitForIdleSync()
+            return SystemClock.uptimeMillis() - start
+        }
+    }
+
+    /** 等待后台把所有缩略图写入磁盘：文件数连续一段时间不再增加 */
+    private fun awaitThumbnailsOnDisk() {
+        var last = -1
+        val deadline = SystemClock.uptimeMillis() + 10_000
+        while (SystemClock.uptimeMillis() < deadline) {
+            val count = thumbnailDir.list()?.size ?: 0
+            if (count > 0 && count == last) return
+            last = count
+            SystemClock.sleep(300)
+        }
+    }
+
+    @Test
+    fun openTime_coldDiskAndMemoryThumbnailCache() {
+        val cache = LayoutThumbnailCache.get(context)
+
+        thumbnailDir.deleteRecursively()
+        cache.clearMemoryCache()
+        val cold = openMillis()
+        awaitThumbnailsOnDisk()
+
+        cache.clearMemoryCache()
+        val fromDisk = openMillis()
+        awaitThumbnailsOnDisk()
+
+        val warm = openMillis()
+
+        Log.i("PuzzleOpen", "打开耗时: 无缓存 ${cold}ms, 磁盘缓存 ${fromDisk}ms, 内存缓存 ${warm}ms")
+        assertTrue("缩略图应已写入磁盘", (thumbnailDir.list()?.size ?: 0) > 0)
+        // 内存命中时同步绑定，不应比全部重新绘制更慢；留余量避免设备抖动造成误报
+        assertTrue("无缓存 ${cold}ms / 内存缓存 ${warm}ms", warm <= cold + 50)
+    }
+
+    /** 把列表测量、布局并绘制rounds帧，返回每帧微秒 */
+    private fun frameMicros(list: View, rounds: Int): Long {
+        val canvas = Canvas(Bitmap.createBitmap(LIST_WIDTH, ITEM_SIZE, Bitmap.Config.ARGB_8888))
+        val start = SystemClock.elapsedRealtimeNanos()
+        repeat(rounds) {
+            list.measure(
+                View.MeasureSpec.makeMeasureSpec(LIST_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ITEM_SIZE, View.MeasureSpec.EXACTLY))
+            list.layout(0, 0, LIST_WIDTH, ITEM_SIZE)
+            list.invalidate()
+            list.draw(canvas)
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / rounds / 1000
+    }
+
+    @Test
+    fun pickerFrame_thumbnailsVsLivePreviews() {
+        val variants = PuzzleLayoutEnhanced.LayoutVariant.values()
+        instrumentation.runOnMainSync {
+            // 改动前：每张卡片一个实时绘制的LayoutPreviewView
+            val live = LinearLayout(context)
+            var start = SystemClock.elapsedRealtimeNanos()
+            for (variant in variants) {
+                live.addView(LayoutPreviewView(context).apply { setLayout(variant.layout) },
+                    ITEM_SIZE, ITEM_SIZE)
+            }
+            val liveBuildMicros = (SystemClock.elapsedRealtimeNanos() - start) / 1000
+
+            // 改动后：每张卡片一个显示缓存缩略图的ImageView
+            val thumbnails = variants.map { LayoutThumbnailCache.render(it.layout, ITEM_SIZE) }
+            val images = LinearLayout(context)
+            start = SystemClock.elapsedRealtimeNanos()
+            for (bitmap in thumbnails) {
+                images.addView(ImageView(context).apply { setImageBitmap(bitmap) }, ITEM_SIZE, ITEM_SIZE)
+            }
+            val imageBuildMicros = (SystemClock.elapsedRealtimeNanos() - start) / 1000
+
+            frameMicros(live, 10)
+            frameMicros(images, 10)
+            val liveFrame = frameMicros(live, ROUNDS)
+            val imageFrame = frameMicros(images, ROUNDS)
+
+            Log.i("PuzzleOpen", "${variants.size} 张卡片: 实时预览 创建${liveBuildMicros}us 每帧${liveFrame}us, " +
+                "缩略图 创建${imageBuildMicros}us 每帧${imageFrame}us")
+            assertEquals(variants.size, images.childCount)
+        }
+    }
+
+    private companion object {
+        const val ITEM_SIZE = 200
+        const val LIST_WIDTH = 1080
+        const val ROUNDS = 50
+    }
+}
@@ -0,0 +1,137 @@
+package com.yoyofloatingclock
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.os.SystemClock
+import android.util.Log
+import android.view.View
+import android.widget.FrameLayout
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.core.app.ActivityScenario
+import androidx.test.ext.junit.runners.AndroidJUnit4
+
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import org.junit.Assert.*
+
+/**
+ * 插入/删除的基准测试：StitchingView挂在真实的Activity窗口里，每次插入或删除后都完整地
+ * 测量、布局并绘制一帧，计时包含绑定、布局和绘制的开销。
+ * 位置更新只绑定可见范围内的项，每次操作的耗时应与已有图片数无关（总计O(n)），
+ * 而不是像整体重建那样随数量线性增长（总计O(n²)）。
+ */
+@RunWith(AndroidJUnit4::class)
+class StitchingViewInsertBenchmark {
+
+    private class CountingObserver : RecyclerView.AdapterDataObserver() {
+        var touchedItems = 0L
+        var fullRefreshes = 0
+
+        override fun onChanged() {
+            fullRefreshes++
+        }
+
+        override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+            touchedItems += itemCount
+        }
+
+        override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+            touchedItems += itemCount
+        }
+
+        override fun onItemRangeChanged(positionStart: Int, itemCount: Int) {
+            touchedItems += itemCount
+        }
+
+        override fun onItemRangeMoved(fromPosition: Int, toPosition: Int, itemCount: Int) {
+            touchedItems += itemCount
+        }
+    }
+
+    private class PassResult(val insertMicros: Long, val deleteMicros: Long, val maxChildren: Int,
+                             val touchedItems: Long, val fullRefreshes: Int)
+
+    /** 同步完成一帧：测量、布局、绘制到离屏Canvas */
+    private fun frame(view: View, canvas: Canvas) {
+        view.measure(
+            View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY))
+        view.layout(0, 0, WIDTH, HEIGHT)
+        view.draw(canvas)
+    }
+
+    /** 在最前面连续插入count张图片，再从最前面逐张删除，返回每次操作的平均耗时 */
+    private fun runPass(count: Int): PassResult {
+        lateinit var result: PassResult
+        ActivityScenario.launch(LayoutEditorActivity::class.java).use { scenario ->
+            scenario.onActivity { activity ->
+                val view = StitchingView(activity)
+                // 关掉动画，只测绑定/布局/绘制本身
+                view.itemAnimator = null
+                view.setSpacing(8)
+                activity.setContentView(FrameLayout(activity).apply { addView(view, WIDTH, HEIGHT) })
+                val observer = CountingObserver()
+                view.adapter!!.registerAdapterDataObserver(observer)
+
+                val bitmap = Bitmap.createBitmap(64, 48, Bitmap.Config.RGB_565)
+                val canvas = Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565))
+                frame(view, canvas)
+
+                var maxChildren = 0
+                var start = SystemClock.elapsedRealtimeNanos()
+                for (i in 0 until count) {
+                    // 始终插在最前面，是位置偏移最多的情况
+                    view.insertImage(0, bitmap)
+                    frame(view, canvas)
+                    maxChildren = maxOf(maxChildren, view.childCount)
+                }
+                val insertNanos = SystemClock.elapsedRealtimeNanos() - start
+                assertEquals(count, view.imageCount)
+
+                start = SystemClock.elapsedRealtimeNanos()
+                for (i in 0 until count) {
+                    view.removeImage(0)
+                    frame(view, canvas)
+                }
+                val deleteNanos = SystemClock.elapsedRealtimeNanos() - start
+                assertEquals(0, view.imageCount)
+
+                result = PassResult(insertNanos / count / 1000, deleteNanos / count / 1000, maxChildren,
+                    observer.touchedItems, observer.fullRefreshes)
+            }
+        }
+        return result
+    }
+
+    @Test
+    fun insertAndDelete_costPerOperationIndependentOfCount() {
+        // 预热
+        runPass(SIZES.first())
+
+        val results = SIZES.map { it to runPass(it) }
+        for ((count, r) in results) {
+            Log.i("StitchBenchmark", "$count 张: 插入 ${r.insertMicros}us/次, 删除 ${r.deleteMicros}us/次, " +
+                "最多 ${r.maxChildren} 个子View, 通知 ${r.touchedItems} 项")
+            assertEquals(0, r.fullRefreshes)
+            // 每次插入/删除只通知自身这一项（插入第一张时前面没有项）
+            assertEquals(2L * count, r.touchedItems)
+        }
+
+        // 只布局可见范围（加预取），子View数不随图片数增长
+        val smallest = results.first().second
+        val largest = results.last().second
+        assertTrue("子View数 ${largest.maxChildren}", largest.maxChildren <= smallest.maxChildren + 2)
+        // 数量增加16倍，单次耗时不应跟着线性增长；留足余量避免设备抖动造成误报
+        assertTrue("插入 ${smallest.insertMicros}us -> ${largest.insertMicros}us",
+            largest.insertMicros <= smallest.insertMicros * 4 + 200)
+        assertTrue("删除 ${smallest.deleteMicros}us -> ${largest.deleteMicros}us",
+            largest.deleteMicros <= smallest.deleteMicros * 4 + 200)
+    }
+
+    private companion object {
+        const val WIDTH = 1080
+        const val HEIGHT = 600
+        val SIZES = listOf(50, 200, 800)
+    }
+}
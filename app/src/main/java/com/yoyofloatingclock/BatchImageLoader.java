@@ -0,0 +1,170 @@
+package com.yoyofloatingclock;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量导入图片 - 有界并发解码，结果按原顺序逐张回调到主线程
+ *
+ * 并发数取CPU核数与内存等级的较小值，同一时刻最多只有这么多张图在解码；
+ * 某张图解码完成后，只要它前面的都已完成就立即回调，不必等待整批结束。
+ */
+public class BatchImageLoader {
+
+    // 每个并发解码大约预留的堆内存（MB）
+    private static final int MEMORY_PER_DECODE_MB = 48;
+
+    // 结果槽位中的标记
+    private static final Object FAILED = new Object();
+    private static final Object DELIVERED = new Object();
+
+    /**
+     * 在工作线程上执行的解码逻辑
+     */
+    public interface Decoder {
+        Bitmap decode(int index, Uri uri) throws Exception;
+    }
+
+    /**
+     * 回调都在主线程，且按uris中的顺序依次到达
+     */
+    public interface Callback {
+        void onImageLoaded(int index, Uri uri, Bitmap bitmap);
+        void onImageFailed(int index, Uri uri);
+        void onComplete(int loadedCount, int failedCount);
+
+        /**
+         * 批次被取消后才解码完成的图片，不会再交付；需要归还引用时覆写
+         */
+        default void onImageDiscarded(int index, Uri uri, Bitmap bitmap) {
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+    private final List<Future<?>> runningTasks = new ArrayList<>();
+
+    public BatchImageLoader(Context context) {
+        int threads = computePoolSize(context);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "batch-decode");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    /**
+     * 并发数：不超过CPU核数，也不超过内存等级能承受的同时解码数
+     */
+    static int computePoolSize(Context context) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ActivityManager activityManager =
+            (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 128;
+        int byMemory = Math.max(1, memoryClass / MEMORY_PER_DECODE_MB);
+        return Math.max(1, Math.min(cores, byMemory));
+    }
+
+    /**
+     * 开始加载一批图片，会取消仍在进行中的上一批
+     */
+    public void load(List<Uri> sources, Decoder decoder, Callback callback) {
+        cancel();
+        final List<Uri> uris = new ArrayList<>(sources);
+        final int batch = generation.get();
+        final int total = uris.size();
+        final Object[] results = new Object[total];  // Bitmap、FAILED或null（未完成）
+        final int[] nextToDeliver = {0};
+        final int[] loadedCount = {0};
+
+        if (total == 0) {
+            callback.onComplete(0, 0);
+            return;
+        }
+
+        for (int i = 0; i < total; i++) {
+            final int index = i;
+            final Uri uri = uris.get(i);
+            runningTasks.add(executor.submit(() -> {
+                if (generation.get() != batch) return;
+
+                Object result;
+                try {
+                    Bitmap bitmap = decoder.decode(index, uri);
+                    result = bitmap != null ? bitmap : FAILED;
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception | OutOfMemoryError e) {
+                    e.printStackTrace();
+                    result = FAILED;
+                }
+
+                final Object finished = result;
+                mainHandler.post(() -> {
+                    // 已被取消或被新一批替换，丢弃结果
+                    if (generation.get() != batch) {
+                        if (finished instanceof Bitmap) {
+                            callback.onImageDiscarded(index, uri, (Bitmap) finished);
+                        }
+                        return;
+                    }
+                    results[index] = finished;
+
+                    // 按顺序交付所有已就绪的前缀
+                    while (nextToDeliver[0] < total && results[nextToDeliver[0]] != null) {
+                        int deliver = nextToDeliver[0]++;
+                        Object value = results[deliver];
+                        results[deliver] = DELIVERED;
+                        if (value == FAILED) {
+                            callback.onImageFailed(deliver, uris.get(deliver));
+                        } else {
+                            loadedCount[0]++;
+                            callback.onImageLoaded(deliver, uris.get(deliver), (Bitmap) value);
+                        }
+                    }
+
+                    if (nextToDeliver[0] == total) {
+                        runningTasks.clear();
+                        callback.onComplete(loadedCount[0], total - loadedCount[0]);
+                    }
+                });
+            }));
+        }
+    }
+
+    /**
+     * 取消当前批次，已排队的任务不再执行，正在解码的任务被中断，结果不再回调
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        for (Future<?> task : runningTasks) {
+            task.cancel(true);
+        }
+        runningTasks.clear();
+    }
+
+    /**
+     * 页面退出时调用
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
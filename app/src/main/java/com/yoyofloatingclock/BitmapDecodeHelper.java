@@ -0,0 +1,199 @@
+package com.yoyofloatingclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片解码工具类 - 读取尺寸/方向，按目标尺寸采样解码
+ */
+public class BitmapDecodeHelper {
+
+    /**
+     * 图片的原始信息（宽高已按EXIF方向校正）
+     */
+    public static class ImageInfo {
+        public final int width;
+        public final int height;
+        public final int rotation;  // 需要顺时针旋转的角度
+
+        ImageInfo(int width, int height, int rotation) {
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+        }
+    }
+
+    private BitmapDecodeHelper() {
+    }
+
+    /**
+     * 只读取图片尺寸和方向，不解码像素
+     */
+    public static ImageInfo readImageInfo(Context context, Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) throw new IOException("无法打开图片: " + uri);
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("无法读取图片尺寸: " + uri);
+        }
+
+        int rotation = readRotation(context, uri);
+        if (rotation == 90 || rotation == 270) {
+            return new ImageInfo(options.outHeight, options.outWidth, rotation);
+        }
+        return new ImageInfo(options.outWidth, options.outHeight, rotation);
+    }
+
+    /**
+     * 按目标尺寸解码，解码结果不小于目标尺寸的一半（2的幂采样），并按EXIF方向旋转
+     */
+    public static Bitmap decodeSampled(Context context, Uri uri, ImageInfo info,
+                                       int reqWidth, int reqHeight) throws IOException {
+        return decodeSampled(context, uri, info, reqWidth, reqHeight, null);
+    }
+
+    /**
+     * 同上，并尝试复用reusable的内存（inBitmap）；不能复用时退回普通解码
+     */
+    public static Bitmap decodeSampled(Context context, Uri uri, ImageInfo info,
+                                       int reqWidth, int reqHeight, Bitmap reusable) throws IOException {
+        return decodeSampled(context, uri, info, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, reusable);
+    }
+
+    /**
+     * 按指定格式解码。HARDWARE位图不能旋转也不能复用内存，需要旋转时先软解码为RGB_565再上传
+     */
+    public static Bitmap decodeSampled(Context context, Uri uri, ImageInfo info, int reqWidth, int reqHeight,
+                                       Bitmap.Config config, Bitmap reusable) throws IOException {
+        boolean hardware = isHardwareConfig(config);
+        Bitmap.Config decodeConfig = hardware && info.rotation != 0 ? Bitmap.Config.RGB_565 : config;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(info.width, info.height, reqWidth, reqHeight);
+        options.inPreferredConfig = decodeConfig;
+        // 可变位图才能在之后作为inBitmap被复用；HARDWARE位图不允许可变
+        options.inMutable = !isHardwareConfig(decodeConfig);
+        options.inBitmap = options.inMutable ? reusable : null;
+
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(context, uri, options);
+        } catch (IllegalArgumentException e) {
+            // 复用的位图不满足条件（格式或大小不符）
+            options.inBitmap = null;
+            bitmap = decodeStream(context, uri, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("图片解码失败: " + uri);
+        }
+        bitmap = rotate(bitmap, info.rotation);
+
+        if (hardware && !isHardware(bitmap)) {
+            Bitmap uploaded = bitmap.copy(config, false);
+            if (uploaded != null) {
+                bitmap.recycle();
+                bitmap = uploaded;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 屏幕预览使用的位图格式：API 26+ 用HARDWARE（像素放在显存），否则用RGB_565（照片不需要透明度）
+     * 导出等需要读写像素的场景仍使用ARGB_8888
+     */
+    public static Bitmap.Config previewConfig() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return Bitmap.Config.HARDWARE;
+        }
+        return Bitmap.Config.RGB_565;
+    }
+
+    public static boolean isHardwareConfig(Bitmap.Config config) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+    }
+
+    public static boolean isHardware(Bitmap bitmap) {
+        return isHardwareConfig(bitmap.getConfig());
+    }
+
+    /**
+     * 需要访问像素（getPixels、软件Canvas绘制等）时使用：HARDWARE位图返回ARGB_8888的副本，
+     * 其它位图原样返回。调用方在返回值不同于参数时负责回收副本
+     */
+    public static Bitmap toSoftware(Bitmap bitmap) {
+        if (bitmap == null || !isHardware(bitmap)) return bitmap;
+        return bitmap.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    /**
+     * 按目标尺寸采样解码后的字节数上限（ARGB_8888），用于挑选可复用的位图
+     */
+    public static long estimateSampledBytes(ImageInfo info, int reqWidth, int reqHeight) {
+        return estimateSampledBytes(info, reqWidth, reqHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    public static long estimateSampledBytes(ImageInfo info, int reqWidth, int reqHeight,
+                                            Bitmap.Config config) {
+        int sampleSize = calculateInSampleSize(info.width, info.height, reqWidth, reqHeight);
+        int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+        return (long) bytesPerPixel * ((info.width + sampleSize - 1) / sampleSize)
+            * ((info.height + sampleSize - 1) / sampleSize);
+    }
+
+    private static Bitmap decodeStream(Context context, Uri uri,
+                                       BitmapFactory.Options options) throws IOException {
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) throw new IOException("无法打开图片: " + uri);
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    /**
+     * 计算采样率：在两个方向上都不小于目标尺寸的最大2的幂
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) return sampleSize;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 读取EXIF方向，需要顺时针旋转的角度
+     */
+    static int readRotation(Context context, Uri uri) {
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) return 0;
+            return new ExifInterface(in).getRotationDegrees();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Bitmap rotate(Bitmap bitmap, int rotation) {
+        if (rotation == 0) return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0,
+            bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+}
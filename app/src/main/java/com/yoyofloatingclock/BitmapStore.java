@@ -0,0 +1,296 @@
+package com.yoyofloatingclock;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 拼图页面共用的位图仓库 - 统一管理解码出来的位图的生命周期
+ *
+ * 1. 同一(Uri, 目标尺寸)只解码一次，按引用计数共享；持有方用完后调用release；
+ * 2. 引用计数归零的位图留在LRU中以便再次使用，总量超过预算时从最久未用的开始淘汰；
+ * 3. 调用方确认不再绘制的临时位图（如导出时逐张解码的原图）放入复用池，后续解码通过inBitmap直接复用其内存；
+ * 4. 按持有方（页面）统计占用的字节数，便于观察内存。
+ *
+ * 预览可以按HARDWARE/RGB_565解码（见BitmapDecodeHelper.previewConfig），HARDWARE位图不可变，不进入复用池。
+ *
+ * 淘汰时不主动recycle，也不放入复用池：被移除的预览项可能仍在播放动画，
+ * 复用会让动画中的图片被新解码的内容覆盖，交给GC回收更安全。
+ */
+public class BitmapStore {
+
+    // 默认预算占内存等级（单个应用堆上限）的比例
+    private static final float DEFAULT_BUDGET_FRACTION = 0.25f;
+    // 复用池最多占预算的比例
+    private static final float POOL_FRACTION = 0.25f;
+
+    private static volatile BitmapStore instance;
+
+    /**
+     * 单个解码结果
+     */
+    private static final class Entry {
+        final String key;
+        final Bitmap bitmap;
+        final String owner;   // 首次解码它的页面，用于统计
+        final long bytes;
+        int refCount;
+
+        Entry(String key, Bitmap bitmap, String owner) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.owner = owner;
+            this.bytes = bitmap.getAllocationByteCount();
+        }
+    }
+
+    /**
+     * 异步获取的回调，在主线程执行；解码失败时bitmap为null
+     */
+    public interface AcquireCallback {
+        void onAcquired(Bitmap bitmap);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bitmap-store");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Bitmap, Entry> entriesByBitmap = new IdentityHashMap<>();
+    // 引用计数为0的条目，按访问顺序排列，最久未用的在前
+    private final LinkedHashMap<String, Entry> unusedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Bitmap> reusePool = new ArrayList<>();
+
+    private long budgetBytes;
+    private long heldBytes = 0;    // 所有条目（含未使用的）
+    private long pooledBytes = 0;  // 复用池
+
+    private BitmapStore(Context context) {
+        this.context = context.getApplicationContext();
+        ActivityManager activityManager =
+            (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 128;
+        budgetBytes = (long) (memoryClass * 1024L * 1024L * DEFAULT_BUDGET_FRACTION);
+    }
+
+    public static BitmapStore get(Context context) {
+        if (instance == null) {
+            synchronized (BitmapStore.class) {
+                if (instance == null) {
+                    instance = new BitmapStore(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 释放一张位图的引用；不是由仓库解码的位图（或仓库尚未创建）直接忽略
+     */
+    public static void releaseIfManaged(Bitmap bitmap) {
+        BitmapStore store = instance;
+        if (store != null && bitmap != null) {
+            store.release(bitmap);
+        }
+    }
+
+    /**
+     * 调整字节预算，立即按新预算淘汰
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimToBudget();
+    }
+
+    /**
+     * 获取(Uri, 目标尺寸)对应的ARGB_8888位图，引用计数加一；未缓存时在当前线程解码（不要在主线程调用）
+     */
+    public Bitmap acquire(Uri uri, int reqWidth, int reqHeight, String owner) throws IOException {
+        return acquire(uri, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, owner);
+    }
+
+    /**
+     * 同上，按指定格式解码；不同格式分别缓存
+     */
+    public Bitmap acquire(Uri uri, int reqWidth, int reqHeight, Bitmap.Config config,
+                          String owner) throws IOException {
+        String key = uri + "@" + reqWidth + "x" + reqHeight + "/" + config;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return retain(entry);
+            }
+        }
+
+        BitmapDecodeHelper.ImageInfo info = BitmapDecodeHelper.readImageInfo(context, uri);
+        Bitmap reusable = BitmapDecodeHelper.isHardwareConfig(config) ? null : takeReusable(
+            BitmapDecodeHelper.estimateSampledBytes(info, reqWidth, reqHeight, config), config);
+        Bitmap bitmap = BitmapDecodeHelper.decodeSampled(context, uri, info,
+            reqWidth, reqHeight, config, reusable);
+
+        synchronized (this) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                // 其它线程同时解码了同一张，保留先到的；这张没有交给过任何持有方，可以直接复用
+                offer(bitmap);
+                return retain(existing);
+            }
+            Entry entry = new Entry(key, bitmap, owner);
+            entries.put(key, entry);
+            entriesByBitmap.put(bitmap, entry);
+            heldBytes += entry.bytes;
+            retain(entry);
+            trimToBudget();
+            return bitmap;
+        }
+    }
+
+    /**
+     * 在仓库的后台线程获取位图，结果回到主线程
+     */
+    public void acquireAsync(Uri uri, int reqWidth, int reqHeight, Bitmap.Config config,
+                             String owner, AcquireCallback callback) {
+        executor.execute(() -> {
+            Bitmap bitmap;
+            try {
+                bitmap = acquire(uri, reqWidth, reqHeight, config, owner);
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                e.printStackTrace();
+                bitmap = null;
+            }
+            final Bitmap result = bitmap;
+            mainHandler.post(() -> callback.onAcquired(result));
+        });
+    }
+
+    /**
+     * 释放一次引用，归零后位图留在LRU中，超出预算时被淘汰
+     *
+     * @return 该位图是否由仓库管理
+     */
+    public synchronized boolean release(Bitmap bitmap) {
+        Entry entry = entriesByBitmap.get(bitmap);
+        if (entry == null) return false;
+        if (entry.refCount > 0 && --entry.refCount == 0) {
+            unusedEntries.put(entry.key, entry);
+            trimToBudget();
+        }
+        return true;
+    }
+
+    /**
+     * 把不再使用的临时位图（如导出时逐张解码的原图）放入复用池
+     */
+    public synchronized void offer(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || entriesByBitmap.containsKey(bitmap)) {
+            return;
+        }
+        long bytes = bitmap.getAllocationByteCount();
+        if (pooledBytes + bytes > budgetBytes * POOL_FRACTION) return;
+        reusePool.add(bitmap);
+        pooledBytes += bytes;
+    }
+
+    /**
+     * 从复用池取出一张ARGB_8888、内存足够容纳bytes字节的位图，没有时返回null
+     */
+    public Bitmap takeReusable(long bytes) {
+        return takeReusable(bytes, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 从复用池取出一张同格式、内存足够容纳bytes字节的位图（取最小的那张），没有时返回null
+     */
+    public synchronized Bitmap takeReusable(long bytes, Bitmap.Config config) {
+        int best = -1;
+        for (int i = 0; i < reusePool.size(); i++) {
+            Bitmap candidate = reusePool.get(i);
+            long size = candidate.getAllocationByteCount();
+            if (candidate.getConfig() == config && size >= bytes
+                    && (best < 0 || size < reusePool.get(best).getAllocationByteCount())) {
+                best = i;
+            }
+        }
+        if (best < 0) return null;
+        Bitmap bitmap = reusePool.remove(best);
+        pooledBytes -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    /**
+     * 系统内存紧张时调用：后台时清空未使用的位图和复用池，前台时减半
+     */
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            evictUnused(0);
+            reusePool.clear();
+            pooledBytes = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            evictUnused(budgetBytes / 2);
+        }
+    }
+
+    /**
+     * 各页面正在持有（引用计数大于0）的字节数
+     */
+    public synchronized Map<String, Long> getHeldBytesByOwner() {
+        Map<String, Long> result = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            if (entry.refCount > 0) {
+                Long bytes = result.get(entry.owner);
+                result.put(entry.owner, (bytes != null ? bytes : 0L) + entry.bytes);
+            }
+        }
+        return result;
+    }
+
+    private Bitmap retain(Entry entry) {
+        if (entry.refCount++ == 0) {
+            unusedEntries.remove(entry.key);
+        }
+        return entry.bitmap;
+    }
+
+    private void trimToBudget() {
+        evictUnused(budgetBytes);
+    }
+
+    /**
+     * 从最久未用的开始淘汰未使用的条目，直到总量不超过limit；正在使用的不受影响
+     */
+    private void evictUnused(long limit) {
+        Iterator<Entry> iterator = unusedEntries.values().iterator();
+        while (heldBytes + pooledBytes > limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            entries.remove(entry.key);
+            entriesByBitmap.remove(entry.bitmap);
+            heldBytes -= entry.bytes;
+        }
+        // 复用池本身也计入预算
+        while (heldBytes + pooledBytes > limit && !reusePool.isEmpty()) {
+            Bitmap bitmap = reusePool.remove(0);
+            pooledBytes -= bitmap.getAllocationByteCount();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.yoyofloatingclock;
+
+import java.util.Arrays;
+
+/**
+ * 格子点击检测的索引 - 纯Java实现，可在JVM上单元测试
+ *
+ * 按底层网格建一张 行×列 的查找表，每个网格单元记录覆盖它的格子序号，
+ * 触摸点先在各轨道的左（上）边缘中二分查找所在的行列，再查表得到候选格子。
+ * 落在格子之间间距里的点，候选格子是它左上方的那个，调用方再用格子的实际边界确认。
+ * 几何计算与 PackedLayout.computeBounds 一致（按权重分配的轨道 + 统一间距）。
+ */
+public class CellHitIndex {
+
+    private final int rows;
+    private final int columns;
+    private final int[] owners;  // rows * columns，未被任何格子覆盖时为-1
+    // 各轨道左（上）边缘的像素位置
+    private final float[] columnStarts;
+    private final float[] rowStarts;
+    private final float canvasWidth;
+    private final float canvasHeight;
+
+    /**
+     * 等分轨道
+     *
+     * @param spans 每个格子4个数：rowStart, rowEnd, colStart, colEnd（end不含）
+     */
+    public CellHitIndex(int[] spans, float canvasWidth, float canvasHeight, float spacing) {
+        this(spans, null, null, canvasWidth, canvasHeight, spacing);
+    }
+
+    /**
+     * @param rowEdges    各行边缘的归一化位置（长度为行数+1），null表示等分
+     * @param columnEdges 各列边缘的归一化位置（长度为列数+1），null表示等分
+     */
+    public CellHitIndex(int[] spans, float[] rowEdges, float[] columnEdges,
+                        float canvasWidth, float canvasHeight, float spacing) {
+        int maxRow = 0, maxCol = 0;
+        for (int i = 0; i + 3 < spans.length; i += 4) {
+            maxRow = Math.max(maxRow, spans[i + 1]);
+            maxCol = Math.max(maxCol, spans[i + 3]);
+        }
+        this.rows = maxRow;
+        this.columns = maxCol;
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.columnStarts = trackStarts(columnEdges, maxCol, canvasWidth, spacing);
+        this.rowStarts = trackStarts(rowEdges, maxRow, canvasHeight, spacing);
+
+        owners = new int[rows * columns];
+        Arrays.fill(owners, -1);
+        for (int i = 0; i + 3 < spans.length; i += 4) {
+            int cellIndex = i / 4;
+            for (int row = spans[i]; row < spans[i + 1]; row++) {
+                for (int column = spans[i + 2]; column < spans[i + 3]; column++) {
+                    // 重叠时保留先出现的格子，与线性扫描的结果一致
+                    if (owners[row * columns + column] < 0) {
+                        owners[row * columns + column] = cellIndex;
+                    }
+                }
+            }
+        }
+    }
+
+    public static CellHitIndex fromLayout(PackedLayout layout, int canvasWidth, int canvasHeight, int spacing) {
+        float[] rowEdges = new float[layout.getRowCount() + 1];
+        for (int i = 0; i < rowEdges.length; i++) rowEdges[i] = layout.getRowEdge(i);
+        float[] columnEdges = new float[layout.getColumnCount() + 1];
+        for (int i = 0; i < columnEdges.length; i++) columnEdges[i] = layout.getColumnEdge(i);
+        return new CellHitIndex(layout.spans(), rowEdges, columnEdges, canvasWidth, canvasHeight, spacing);
+    }
+
+    /**
+     * 各轨道起始边缘的像素位置，与 PackedLayout.computeBounds 的左（上）边缘相同
+     */
+    private static float[] trackStarts(float[] edges, int count, float size, float spacing) {
+        float[] starts = new float[count];
+        for (int i = 0; i < count; i++) {
+            float edge = edges != null ? edges[i] : (float) ((double) i / count);
+            starts[i] = spacing + edge * (size - spacing);
+        }
+        return starts;
+    }
+
+    /**
+     * 查找坐标所在的候选格子序号，画布外或未被覆盖时返回-1
+     */
+    public int findCandidate(float x, float y) {
+        if (rows == 0 || columns == 0) return -1;
+        int column = track(x, columnStarts, canvasWidth);
+        int row = track(y, rowStarts, canvasHeight);
+        if (column < 0 || row < 0) return -1;
+        return owners[row * columns + column];
+    }
+
+    /**
+     * 坐标所在的轨道；落在轨道后面的间距里时算作该轨道
+     */
+    private static int track(float position, float[] starts, float size) {
+        if (position < starts[0] || position >= size) return -1;
+        // 最后一个起点不大于position的轨道
+        int low = 0, high = starts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+}
@@ -0,0 +1,124 @@
+package com.yoyofloatingclock;
+
+import java.util.ArrayDeque;
+
+/**
+ * 布局编辑器的撤销/重做历史 - 纯Java实现，可在JVM上单元测试
+ *
+ * 编辑器的格子是一个栈（合并、填充只在末尾添加，删除、重置只从末尾移除），
+ * 所以每一步只需记下这一步添加或移除了哪些格子，撤销时反向执行即可，
+ * 每步的内存与改动的格子数成正比，和网格大小无关。
+ */
+public class GridEditHistory {
+
+    public static final int MAX_STEPS = 300;
+
+    /**
+     * 一步编辑：在格子列表末尾添加或移除了spans中的格子（每个格子4个数，按列表顺序）
+     */
+    private static final class Step {
+        final boolean added;
+        final int[] spans;
+
+        Step(boolean added, int[] spans) {
+            this.added = added;
+            this.spans = spans;
+        }
+    }
+
+    private final int maxSteps;
+    private final ArrayDeque<Step> undoSteps = new ArrayDeque<>();
+    private final ArrayDeque<Step> redoSteps = new ArrayDeque<>();
+
+    public GridEditHistory() {
+        this(MAX_STEPS);
+    }
+
+    public GridEditHistory(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps必须大于0: " + maxSteps);
+        }
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * 记录在末尾新增的格子：model中从firstCell开始到末尾的格子
+     */
+    public void recordAdded(GridEditorModel model, int firstCell) {
+        if (firstCell < 0 || firstCell >= model.getCellCount()) return;
+        push(new Step(true, model.getSpans(firstCell, model.getCellCount())));
+    }
+
+    /**
+     * 记录从末尾移除的格子
+     *
+     * @param spans 被移除的格子，按原列表顺序
+     */
+    public void recordRemoved(int[] spans) {
+        if (spans == null || spans.length == 0) return;
+        push(new Step(false, spans));
+    }
+
+    private void push(Step step) {
+        redoSteps.clear();
+        undoSteps.addLast(step);
+        if (undoSteps.size() > maxSteps) {
+            undoSteps.removeFirst();
+        }
+    }
+
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * 撤销最近一步
+     *
+     * @return 是否有可撤销的步骤
+     */
+    public boolean undo(GridEditorModel model) {
+        Step step = undoSteps.pollLast();
+        if (step == null) return false;
+        apply(model, step, !step.added);
+        redoSteps.addLast(step);
+        return true;
+    }
+
+    /**
+     * 重做最近撤销的一步
+     *
+     * @return 是否有可重做的步骤
+     */
+    public boolean redo(GridEditorModel model) {
+        Step step = redoSteps.pollLast();
+        if (step == null) return false;
+        apply(model, step, step.added);
+        undoSteps.addLast(step);
+        return true;
+    }
+
+    private static void apply(GridEditorModel model, Step step, boolean add) {
+        int[] spans = step.spans;
+        if (add) {
+            for (int i = 0; i + 3 < spans.length; i += 4) {
+                model.addCell(spans[i], spans[i + 1], spans[i + 2], spans[i + 3]);
+            }
+        } else {
+            for (int i = 0; i < spans.length; i += 4) {
+                model.removeLastCell();
+            }
+        }
+    }
+
+    /**
+     * 清空历史，网格大小改变后旧的步骤不再适用
+     */
+    public void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+    }
+}
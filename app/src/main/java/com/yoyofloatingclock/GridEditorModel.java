@@ -0,0 +1,375 @@
+package com.yoyofloatingclock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 自定义布局编辑器的数据模型 - 纯Java实现，可在JVM上单元测试
+ *
+ * 选中和占用状态按行存成位掩码（每行一个long，第c位表示第c列），
+ * 合并时逐行比较掩码即可判断选区是否为完整的矩形、是否与已有格子重叠，复杂度O(行数)。
+ * 已合并的格子按顺序存放在int[]中，每个格子4个数：rowStart, rowEnd, colStart, colEnd（end不含）。
+ */
+public class GridEditorModel {
+
+    public static final int MIN_SIZE = 2;
+    // 每行一个long，列数不能超过64；再大的网格在手机上也点不准
+    public static final int MAX_SIZE = 32;
+
+    private int rows;
+    private int columns;
+    private long[] selected;
+    private long[] occupied;
+    private int[] spans = new int[16 * 4];
+    private int cellCount;
+
+    public GridEditorModel(int rows, int columns) {
+        setGridSize(rows, columns);
+    }
+
+    /**
+     * 改变网格大小，清空所有格子和选区
+     */
+    public void setGridSize(int rows, int columns) {
+        if (rows < MIN_SIZE || rows > MAX_SIZE || columns < MIN_SIZE || columns > MAX_SIZE) {
+            throw new IllegalArgumentException("网格大小超出范围: " + rows + "×" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.selected = new long[rows];
+        this.occupied = new long[rows];
+        this.cellCount = 0;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * 第column到第column + count - 1列的掩码
+     */
+    static long columnMask(int column, int count) {
+        long bits = count >= 64 ? -1L : (1L << count) - 1;
+        return bits << column;
+    }
+
+    // ==================== 选区 ====================
+
+    public boolean isSelected(int row, int column) {
+        return (selected[row] & (1L << column)) != 0;
+    }
+
+    public boolean isOccupied(int row, int column) {
+        return (occupied[row] & (1L << column)) != 0;
+    }
+
+    /**
+     * 设置单元格的选中状态；已被格子占用的单元格不能选中
+     *
+     * @return 状态是否发生了变化
+     */
+    public boolean setSelected(int row, int column, boolean select) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) return false;
+        long bit = 1L << column;
+        if (select && (occupied[row] & bit) != 0) return false;
+        long before = selected[row];
+        selected[row] = select ? before | bit : before & ~bit;
+        return selected[row] != before;
+    }
+
+    /**
+     * 切换单元格的选中状态
+     *
+     * @return 状态是否发生了变化
+     */
+    public boolean toggle(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) return false;
+        return setSelected(row, column, !isSelected(row, column));
+    }
+
+    public void clearSelection() {
+        Arrays.fill(selected, 0L);
+    }
+
+    public int getSelectedCount() {
+        int count = 0;
+        for (long mask : selected) {
+            count += Long.bitCount(mask);
+        }
+        return count;
+    }
+
+    /**
+     * 选区的外接矩形 {rowStart, rowEnd, colStart, colEnd}（end不含），没有选中时返回null
+     */
+    public int[] getSelectionBounds() {
+        int firstRow = -1, lastRow = -1;
+        long union = 0;
+        for (int row = 0; row < rows; row++) {
+            if (selected[row] != 0) {
+                if (firstRow < 0) firstRow = row;
+                lastRow = row;
+                union |= selected[row];
+            }
+        }
+        if (firstRow < 0) return null;
+        return new int[] {
+            firstRow, lastRow + 1,
+            Long.numberOfTrailingZeros(union), 64 - Long.numberOfLeadingZeros(union)
+        };
+    }
+
+    // ==================== 合并 ====================
+
+    /**
+     * 选区是否能合并成一个格子：至少2个单元格，正好填满外接矩形，且不与已有格子重叠
+     */
+    public boolean canMergeSelection() {
+        int[] bounds = getSelectionBounds();
+        if (bounds == null) return false;
+        long rectMask = columnMask(bounds[2], bounds[3] - bounds[2]);
+        for (int row = bounds[0]; row < bounds[1]; row++) {
+            if (selected[row] != rectMask || (occupied[row] & rectMask) != 0) return false;
+        }
+        return (bounds[1] - bounds[0]) * (bounds[3] - bounds[2]) >= 2;
+    }
+
+    /**
+     * 把选区合并成一个格子
+     *
+     * @return 新格子的序号，选区不是完整矩形时返回-1
+     */
+    public int mergeSelection() {
+        if (!canMergeSelection()) return -1;
+        int[] bounds = getSelectionBounds();
+        clearSelection();
+        return addCell(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    /**
+     * 添加一个格子并标记占用；区域越界或与已有格子重叠时抛出IllegalArgumentException
+     *
+     * @return 新格子的序号
+     */
+    public int addCell(int rowStart, int rowEnd, int colStart, int colEnd) {
+        if (rowStart < 0 || rowEnd > rows || rowEnd <= rowStart
+                || colStart < 0 || colEnd > columns || colEnd <= colStart) {
+            throw new IllegalArgumentException("格子超出网格: " + rowStart + "," + rowEnd + "," + colStart + "," + colEnd);
+        }
+        long mask = columnMask(colStart, colEnd - colStart);
+        for (int row = rowStart; row < rowEnd; row++) {
+            if ((occupied[row] & mask) != 0) {
+                throw new IllegalArgumentException("格子与已有格子重叠");
+            }
+        }
+        for (int row = rowStart; row < rowEnd; row++) {
+            occupied[row] |= mask;
+            selected[row] &= ~mask;
+        }
+
+        if (spans.length < (cellCount + 1) * 4) {
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+        int i = cellCount * 4;
+        spans[i] = rowStart;
+        spans[i + 1] = rowEnd;
+        spans[i + 2] = colStart;
+        spans[i + 3] = colEnd;
+        return cellCount++;
+    }
+
+    /**
+     * 删除最后一个格子并取消占用
+     *
+     * @return 被删除格子的 {rowStart, rowEnd, colStart, colEnd}，没有格子时返回null
+     */
+    public int[] removeLastCell() {
+        if (cellCount == 0) return null;
+        cellCount--;
+        int i = cellCount * 4;
+        long mask = columnMask(spans[i + 2], spans[i + 3] - spans[i + 2]);
+        for (int row = spans[i]; row < spans[i + 1]; row++) {
+            occupied[row] &= ~mask;
+        }
+        return Arrays.copyOfRange(spans, i, i + 4);
+    }
+
+    /**
+     * 每个未被占用的单元格各成一个格子
+     *
+     * @return 新增的格子数
+     */
+    public int autoFill() {
+        int added = 0;
+        long full = columnMask(0, columns);
+        for (int row = 0; row < rows; row++) {
+            long free = ~occupied[row] & full;
+            while (free != 0) {
+                int column = Long.numberOfTrailingZeros(free);
+                free &= free - 1;
+                addCell(row, row + 1, column, column + 1);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 用尽量大的矩形贪心地铺满剩余空格
+     *
+     * 每次放置前逐行累计每列向上连续空格的高度（直方图），用单调栈求出所有极大空白矩形，
+     * 取其中满足约束的最大子矩形（靠左上角）放置，重复直到没有空格。
+     * 没有约束时每次放置O(行数·列数)；有约束时每个极大矩形还要枚举子矩形高度，为O(行数²·列数)。
+     *
+     * @param targetCount 目标格子数，0表示不限；每次放置的面积不超过 剩余空格数 / 还需的格子数，
+     *                    形状受限时实际格子数可能多于目标
+     * @param maxAspect   格子长边与短边之比（按网格单元计）的上限，0表示不限，否则不能小于1
+     * @return 新增的格子数
+     */
+    public int autoFillRectangles(int targetCount, float maxAspect) {
+        if (targetCount < 0 || (maxAspect != 0 && !(maxAspect >= 1))) {
+            throw new IllegalArgumentException("无效的约束: targetCount=" + targetCount + ", maxAspect=" + maxAspect);
+        }
+        long full = columnMask(0, columns);
+        int free = 0;
+        for (long mask : occupied) {
+            free += Long.bitCount(~mask & full);
+        }
+
+        int[] heights = new int[columns];
+        int[] stack = new int[columns];
+        int[] best = new int[5];  // 面积, top, left, height, width
+        int added = 0;
+        while (free > 0) {
+            int cap = free;
+            if (targetCount > 0) {
+                int needed = Math.max(1, targetCount - cellCount);
+                cap = (free + needed - 1) / needed;
+            }
+
+            best[0] = 0;
+            Arrays.fill(heights, 0);
+            for (int row = 0; row < rows; row++) {
+                long freeRow = ~occupied[row];
+                for (int column = 0; column < columns; column++) {
+                    heights[column] = (freeRow & (1L << column)) != 0 ? heights[column] + 1 : 0;
+                }
+                // 单调栈：弹出的每一列对应一个以它的高度为高、向左右延伸到最宽的极大矩形
+                int size = 0;
+                for (int column = 0; column <= columns; column++) {
+                    int height = column < columns ? heights[column] : 0;
+                    while (size > 0 && heights[stack[size - 1]] >= height) {
+                        int barHeight = heights[stack[--size]];
+                        int left = size > 0 ? stack[size - 1] + 1 : 0;
+                        if (barHeight > 0) {
+                            considerRectangle(row - barHeight + 1, left, barHeight, column - left,
+                                cap, maxAspect, best);
+                        }
+                    }
+                    stack[size++] = column;
+                }
+            }
+
+            addCell(best[1], best[1] + best[3], best[2], best[2] + best[4]);
+            free -= best[0];
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * 在 height×width 的极大空白矩形里取满足面积上限和长宽比的最大子矩形，比best更大时记录
+     */
+    private static void considerRectangle(int top, int left, int height, int width,
+                                          int cap, float maxAspect, int[] best) {
+        if (height * width <= best[0]) return;
+        int bestHeight = 0, bestWidth = 0, bestArea = best[0];
+        if (height * width <= cap && (maxAspect == 0 || withinAspect(height, width, maxAspect))) {
+            bestHeight = height;
+            bestWidth = width;
+            bestArea = height * width;
+        } else {
+            for (int h = height; h >= 1; h--) {
+                int w = Math.min(width, cap / h);
+                if (maxAspect != 0) w = Math.min(w, (int) (maxAspect * h));
+                if (w < 1 || h * w <= bestArea) continue;
+                if (maxAspect != 0 && !withinAspect(h, w, maxAspect)) continue;
+                bestHeight = h;
+                bestWidth = w;
+                bestArea = h * w;
+            }
+        }
+        if (bestArea > best[0] && bestHeight > 0) {
+            best[0] = bestArea;
+            best[1] = top;
+            best[2] = left;
+            best[3] = bestHeight;
+            best[4] = bestWidth;
+        }
+    }
+
+    private static boolean withinAspect(int height, int width, float maxAspect) {
+        return Math.max(height, width) <= maxAspect * Math.min(height, width);
+    }
+
+    /**
+     * 清空所有格子和选区，网格大小不变
+     */
+    public void reset() {
+        Arrays.fill(selected, 0L);
+        Arrays.fill(occupied, 0L);
+        cellCount = 0;
+    }
+
+    // ==================== 读取 ====================
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getRowStart(int cell) { return spans[cell * 4]; }
+    public int getRowEnd(int cell) { return spans[cell * 4 + 1]; }
+    public int getColStart(int cell) { return spans[cell * 4 + 2]; }
+    public int getColEnd(int cell) { return spans[cell * 4 + 3]; }
+
+    /**
+     * 第from到to - 1个格子的spans副本
+     */
+    public int[] getSpans(int from, int to) {
+        if (from < 0 || to > cellCount || from > to) {
+            throw new IndexOutOfBoundsException("格子范围无效: " + from + ".." + to);
+        }
+        return Arrays.copyOfRange(spans, from * 4, to * 4);
+    }
+
+    /**
+     * 是否所有单元格都已被格子覆盖
+     */
+    public boolean isFull() {
+        long full = columnMask(0, columns);
+        for (long mask : occupied) {
+            if (mask != full) return false;
+        }
+        return true;
+    }
+
+    public List<GridCell> getCells() {
+        List<GridCell> cells = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) {
+            cells.add(new GridCell(getRowStart(i), getRowEnd(i), getColStart(i), getColEnd(i)));
+        }
+        return cells;
+    }
+
+    /**
+     * 当前格子组成的不可变布局
+     */
+    public PackedLayout toLayout() {
+        return new PackedLayout(Arrays.copyOf(spans, cellCount * 4));
+    }
+}
@@ -1,37 +1,53 @@
 package com.yoyofloatingclock;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 网格编辑器View - 用于自定义布局编辑
+ *
+ * 网格线和已合并的格子预先画到一张缓存位图上，只在尺寸或格子变化时重画；
+ * 每帧只贴这张位图，再在上面画选区Path。拖动选择时只重建选区，绘制时不分配对象。
  */
 public class GridEditorView extends View {
     
-    private int rows = 6;
-    private int columns = 6;
-    
     private Paint gridPaint;
     private Paint selectedPaint;
     private Paint mergePaint;
     private Paint numberPaint;
     
-    private List<GridCell> cells = new ArrayList<>();
-    private Set<Integer> selectedCellIndices = new HashSet<>();
-    private boolean[][] cellOccupied;  // 标记哪些网格被占用
+    // 选中、占用和已合并的格子都保存在模型里
+    private final GridEditorModel model = new GridEditorModel(6, 6);
+    private final GridEditHistory history = new GridEditHistory();
+    
+    // 绘制缓存
+    private float cellWidth;
+    private float cellHeight;
+    private float[] gridLines = new float[0];
+    private float textOffset;  // 文字基线相对格子中心的偏移
+    private String[] labels = new String[0];
+    private final Path selectionPath = new Path();
+    private final RectF drawRect = new RectF();
+    private boolean selectionDirty = true;
+    // 网格线 + 已合并格子的静态层
+    private Bitmap staticLayer;
+    private final Canvas staticCanvas = new Canvas();
+    private boolean staticDirty = true;
     
-    private int cellCounter = 1;  // 用于给格子编号
+    // 拖动选择：整个手势按第一个单元格决定是选中还是取消，同一单元格不会反复切换
+    private boolean dragSelect;
+    private int lastTouchRow = -1;
+    private int lastTouchColumn = -1;
     
     public GridEditorView(Context context) {
         this(context, null);
@@ -58,155 +74,210 @@ public class GridEditorView extends View {
         numberPaint.setColor(Color.WHITE);
         numberPaint.setTextSize(32);
         numberPaint.setTextAlign(Paint.Align.CENTER);
-        
-        initCellOccupied();
+        textOffset = -(numberPaint.descent() + numberPaint.ascent()) / 2;
     }
     
-    private void initCellOccupied() {
-        cellOccupied = new boolean[rows][columns];
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < columns; c++) {
-                cellOccupied[r][c] = false;
-            }
-        }
+    public void setGridSize(int rows, int columns) {
+        // android:min 在API 26以下不生效，这里再限制一次
+        model.setGridSize(clampSize(rows), clampSize(columns));
+        history.clear();
+        updateGeometry();
+        onModelChanged();
     }
     
-    public void setGridSize(int rows, int columns) {
-        this.rows = rows;
-        this.columns = columns;
-        initCellOccupied();
-        cells.clear();
-        selectedCellIndices.clear();
-        cellCounter = 1;
-        invalidate();
+    private static int clampSize(int size) {
+        return Math.max(GridEditorModel.MIN_SIZE, Math.min(GridEditorModel.MAX_SIZE, size));
     }
     
-    public int getRows() { return rows; }
-    public int getColumns() { return columns; }
+    public int getRows() { return model.getRows(); }
+    public int getColumns() { return model.getColumns(); }
     
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry();
+        selectionDirty = true;
+        staticDirty = true;
+    }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // 重新显示时再按需创建
+        if (staticLayer != null) {
+            staticLayer.recycle();
+            staticLayer = null;
+        }
+        staticDirty = true;
+    }
+    
+    /**
+     * 重新计算单元格尺寸和网格线坐标（drawLines每条线4个数）
+     */
+    private void updateGeometry() {
+        int rows = model.getRows();
+        int columns = model.getColumns();
         int width = getWidth();
         int height = getHeight();
+        cellWidth = width / (float) columns;
+        cellHeight = height / (float) rows;
         
-        float cellWidth = width / (float) columns;
-        float cellHeight = height / (float) rows;
-        
-        // 绘制网格线
-        for (int i = 0; i <= rows; i++) {
-            float y = i * cellHeight;
-            canvas.drawLine(0, y, width, y, gridPaint);
+        int lineCount = rows + 1 + columns + 1;
+        if (gridLines.length != lineCount * 4) {
+            gridLines = new float[lineCount * 4];
         }
-        for (int i = 0; i <= columns; i++) {
-            float x = i * cellWidth;
-            canvas.drawLine(x, 0, x, height, gridPaint);
+        int i = 0;
+        for (int row = 0; row <= rows; row++) {
+            float y = row * cellHeight;
+            gridLines[i++] = 0;
+            gridLines[i++] = y;
+            gridLines[i++] = width;
+            gridLines[i++] = y;
+        }
+        for (int column = 0; column <= columns; column++) {
+            float x = column * cellWidth;
+            gridLines[i++] = x;
+            gridLines[i++] = 0;
+            gridLines[i++] = x;
+            gridLines[i++] = height;
+        }
+    }
+    
+    /**
+     * 格子或选区整体变化后重建缓存并重绘整个View
+     */
+    private void onModelChanged() {
+        int count = model.getCellCount();
+        if (labels.length < count) {
+            String[] grown = new String[Math.max(count, labels.length * 2)];
+            System.arraycopy(labels, 0, grown, 0, labels.length);
+            for (int i = labels.length; i < grown.length; i++) {
+                grown[i] = String.valueOf(i + 1);
+            }
+            labels = grown;
+        }
+        selectionDirty = true;
+        staticDirty = true;
+        invalidate();
+    }
+    
+    /**
+     * 按行把连续选中的单元格合成一个矩形加入Path
+     */
+    private void rebuildSelectionPath() {
+        selectionPath.rewind();
+        int columns = model.getColumns();
+        for (int row = 0; row < model.getRows(); row++) {
+            int column = 0;
+            while (column < columns) {
+                if (!model.isSelected(row, column)) {
+                    column++;
+                    continue;
+                }
+                int start = column;
+                while (column < columns && model.isSelected(row, column)) column++;
+                selectionPath.addRect(start * cellWidth, row * cellHeight,
+                    column * cellWidth, (row + 1) * cellHeight, Path.Direction.CW);
+            }
+        }
+        selectionDirty = false;
+    }
+    
+    /**
+     * 把网格线、已合并的格子和编号画到静态层，尺寸不变时复用同一张位图
+     */
+    private void rebuildStaticLayer() {
+        int width = getWidth();
+        int height = getHeight();
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+            if (staticLayer != null) {
+                staticLayer.recycle();
+            }
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            staticCanvas.setBitmap(staticLayer);
+        } else {
+            staticLayer.eraseColor(Color.TRANSPARENT);
         }
         
-        // 绘制已合并的格子
-        for (int i = 0; i < cells.size(); i++) {
-            GridCell cell = cells.get(i);
-            RectF rect = new RectF(
-                cell.getColStart() * cellWidth,
-                cell.getRowStart() * cellHeight,
-                cell.getColEnd() * cellWidth,
-                cell.getRowEnd() * cellHeight
+        // 绘制网格线
+        staticCanvas.drawLines(gridLines, gridPaint);
+        
+        // 绘制已合并的格子和编号
+        for (int i = 0; i < model.getCellCount(); i++) {
+            drawRect.set(
+                model.getColStart(i) * cellWidth,
+                model.getRowStart(i) * cellHeight,
+                model.getColEnd(i) * cellWidth,
+                model.getRowEnd(i) * cellHeight
             );
-            canvas.drawRect(rect, mergePaint);
-            
-            // 绘制格子编号
-            String number = String.valueOf(i + 1);
-            float textX = rect.centerX();
-            float textY = rect.centerY() - (numberPaint.descent() + numberPaint.ascent()) / 2;
-            canvas.drawText(number, textX, textY, numberPaint);
+            staticCanvas.drawRect(drawRect, mergePaint);
+            staticCanvas.drawText(labels[i], drawRect.centerX(), drawRect.centerY() + textOffset, numberPaint);
         }
+        staticDirty = false;
+    }
+    
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (getWidth() <= 0 || getHeight() <= 0) return;
+        
+        if (staticDirty || staticLayer == null) {
+            rebuildStaticLayer();
+        }
+        canvas.drawBitmap(staticLayer, 0, 0, null);
         
         // 绘制选中的单元格
-        for (int index : selectedCellIndices) {
-            int row = index / columns;
-            int col = index % columns;
-            
-            if (!cellOccupied[row][col]) {
-                RectF rect = new RectF(
-                    col * cellWidth,
-                    row * cellHeight,
-                    (col + 1) * cellWidth,
-                    (row + 1) * cellHeight
-                );
-                canvas.drawRect(rect, selectedPaint);
-            }
+        if (selectionDirty) {
+            rebuildSelectionPath();
         }
+        canvas.drawPath(selectionPath, selectedPaint);
     }
     
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (event.getAction() == MotionEvent.ACTION_DOWN || 
-            event.getAction() == MotionEvent.ACTION_MOVE) {
-            
-            float x = event.getX();
-            float y = event.getY();
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+            if (event.getX() < 0 || event.getY() < 0) {
+                return true;
+            }
+            int col = (int) (event.getX() / cellWidth);
+            int row = (int) (event.getY() / cellHeight);
             
-            int col = (int) (x / getWidth() * columns);
-            int row = (int) (y / getHeight() * rows);
+            if (action == MotionEvent.ACTION_DOWN) {
+                dragSelect = !model.isSelected(Math.min(row, model.getRows() - 1),
+                    Math.min(col, model.getColumns() - 1));
+            } else if (row == lastTouchRow && col == lastTouchColumn) {
+                return true;
+            }
+            lastTouchRow = row;
+            lastTouchColumn = col;
             
-            if (row >= 0 && row < rows && col >= 0 && col < columns) {
-                int index = row * columns + col;
-                
-                if (!cellOccupied[row][col]) {
-                    if (selectedCellIndices.contains(index)) {
-                        selectedCellIndices.remove(index);
-                    } else {
-                        selectedCellIndices.add(index);
-                    }
-                    invalidate();
-                }
+            // 越界和已占用的单元格不会改变状态
+            if (model.setSelected(row, col, dragSelect)) {
+                // 静态层不变，重绘只是贴图加一条Path
+                selectionDirty = true;
+                invalidate();
             }
             return true;
         }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            lastTouchRow = -1;
+            lastTouchColumn = -1;
+            return true;
+        }
         return super.onTouchEvent(event);
     }
     
     /**
-     * 合并选中的格子
+     * 合并选中的格子，选区必须是不与已有格子重叠的完整矩形
      */
     public boolean mergeSelectedCells() {
-        if (selectedCellIndices.size() < 2) {
+        int cell = model.mergeSelection();
+        if (cell < 0) {
             return false;
         }
-        
-        // 找出选中格子的边界
-        int minRow = rows, maxRow = -1;
-        int minCol = columns, maxCol = -1;
-        
-        for (int index : selectedCellIndices) {
-            int row = index / columns;
-            int col = index % columns;
-            minRow = Math.min(minRow, row);
-            maxRow = Math.max(maxRow, row);
-            minCol = Math.min(minCol, col);
-            maxCol = Math.max(maxCol, col);
-        }
-        
-        // 检查是否形成矩形
-        int expectedCells = (maxRow - minRow + 1) * (maxCol - minCol + 1);
-        if (selectedCellIndices.size() != expectedCells) {
-            return false;  // 不是矩形区域
-        }
-        
-        // 创建合并后的格子
-        GridCell mergedCell = new GridCell(minRow, maxRow + 1, minCol, maxCol + 1);
-        cells.add(mergedCell);
-        
-        // 标记这些格子为已占用
-        for (int r = minRow; r <= maxRow; r++) {
-            for (int c = minCol; c <= maxCol; c++) {
-                cellOccupied[r][c] = true;
-            }
-        }
-        
-        selectedCellIndices.clear();
-        invalidate();
+        history.recordAdded(model, cell);
+        onModelChanged();
         return true;
     }
     
@@ -214,58 +285,91 @@ public class GridEditorView extends View {
      * 删除最后一个合并的格子
      */
     public void deleteLastCell() {
-        if (cells.isEmpty()) return;
-        
-        GridCell lastCell = cells.remove(cells.size() - 1);
-        
-        // 取消占用标记
-        for (int r = lastCell.getRowStart(); r < lastCell.getRowEnd(); r++) {
-            for (int c = lastCell.getColStart(); c < lastCell.getColEnd(); c++) {
-                cellOccupied[r][c] = false;
-            }
+        int[] removed = model.removeLastCell();
+        if (removed != null) {
+            history.recordRemoved(removed);
+            onModelChanged();
         }
-        
-        invalidate();
     }
     
     /**
-     * 重置所有格子
+     * 重置所有格子，可以撤销
      */
     public void reset() {
-        cells.clear();
-        selectedCellIndices.clear();
-        initCellOccupied();
-        cellCounter = 1;
-        invalidate();
+        history.recordRemoved(model.getSpans(0, model.getCellCount()));
+        model.reset();
+        onModelChanged();
     }
     
     /**
      * 自动填充剩余空格
      */
     public void autoFill() {
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < columns; c++) {
-                if (!cellOccupied[r][c]) {
-                    GridCell cell = new GridCell(r, r + 1, c, c + 1);
-                    cells.add(cell);
-                    cellOccupied[r][c] = true;
-                }
-            }
+        int firstCell = model.getCellCount();
+        if (model.autoFill() > 0) {
+            history.recordAdded(model, firstCell);
         }
-        invalidate();
+        onModelChanged();
+    }
+    
+    /**
+     * 用尽量大的矩形自动填充剩余空格
+     *
+     * @param targetCount 目标格子数，0表示不限
+     * @param maxAspect   格子长宽比上限，0表示不限
+     */
+    public void autoFillRectangles(int targetCount, float maxAspect) {
+        int firstCell = model.getCellCount();
+        if (model.autoFillRectangles(targetCount, maxAspect) > 0) {
+            history.recordAdded(model, firstCell);
+        }
+        onModelChanged();
+    }
+    
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+    
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+    
+    /**
+     * 撤销上一步合并、填充、删除或重置
+     */
+    public boolean undo() {
+        if (!history.undo(model)) return false;
+        onModelChanged();
+        return true;
+    }
+    
+    /**
+     * 重做上一步撤销的操作
+     */
+    public boolean redo() {
+        if (!history.redo(model)) return false;
+        onModelChanged();
+        return true;
     }
     
     /**
      * 获取所有格子
      */
     public List<GridCell> getCells() {
-        return new ArrayList<>(cells);
+        return model.getCells();
+    }
+    
+    /**
+     * 当前格子组成的布局
+     */
+    public PackedLayout toLayout() {
+        return model.toLayout();
     }
     
     /**
      * 获取格子数量
      */
     public int getCellCount() {
-        return cells.size();
+        return model.getCellCount();
     }
 }
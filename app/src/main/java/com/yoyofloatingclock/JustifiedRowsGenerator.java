@@ -0,0 +1,124 @@
+package com.yoyofloatingclock;
+
+/**
+ * 两端对齐的行布局 - 纯Java实现，可在JVM上单元测试
+ *
+ * 图片按原顺序分成若干行，每行内的图片等高、按宽高比分配宽度并正好铺满画布宽度，
+ * 适合预设变体覆盖不到的大量图片（10~200张）。
+ * 分行用一维DP：best[j] = min(best[i] + cost(i, j))，每行最多maxPerRow张，
+ * 行内宽高比之和用前缀和O(1)得到，总计O(N·k)。
+ * 单行的代价是行高与目标行高之差的平方；目标行高使各行等高时正好填满画布。
+ * 求得的各行高度之和与画布高度不一定相等，最后统一按比例缩放行高（只带来很小的居中裁切）。
+ */
+public class JustifiedRowsGenerator {
+
+    public static final int MIN_PHOTOS = 1;
+    public static final int MAX_PHOTOS = 200;
+
+    private JustifiedRowsGenerator() {
+    }
+
+    /**
+     * 使用默认的每行最大张数
+     */
+    public static PackedLayout generate(float[] photoAspects, float canvasAspect) {
+        return generate(photoAspects, canvasAspect, defaultMaxPerRow(photoAspects, canvasAspect));
+    }
+
+    /**
+     * @param photoAspects 各图片的宽高比（宽/高，已考虑EXIF旋转）
+     * @param canvasAspect 画布宽高比（宽/高）
+     * @param maxPerRow    每行最多几张
+     * @return 按归一化位置排布的布局，格子顺序与图片顺序一致
+     */
+    public static PackedLayout generate(float[] photoAspects, float canvasAspect, int maxPerRow) {
+        int count = photoAspects.length;
+        if (count < MIN_PHOTOS || count > MAX_PHOTOS) {
+            throw new IllegalArgumentException("图片数量超出范围: " + count);
+        }
+        if (!(canvasAspect > 0) || maxPerRow < 1) {
+            throw new IllegalArgumentException("无效的参数: canvasAspect=" + canvasAspect + ", maxPerRow=" + maxPerRow);
+        }
+
+        // 画布高为1、宽为canvasAspect；前缀和 prefix[i] = 前i张图片的宽高比之和
+        double[] prefix = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            if (!(photoAspects[i] > 0)) {
+                throw new IllegalArgumentException("无效的图片宽高比: " + photoAspects[i]);
+            }
+            prefix[i + 1] = prefix[i] + photoAspects[i];
+        }
+        double targetHeight = targetRowHeight(prefix[count], canvasAspect);
+
+        // best[j]：前j张图片分好行的最小代价，rowStart[j]：最后一行的起点
+        double[] best = new double[count + 1];
+        int[] rowStart = new int[count + 1];
+        for (int j = 1; j <= count; j++) {
+            best[j] = Double.MAX_VALUE;
+            for (int i = j - 1; i >= Math.max(0, j - maxPerRow); i--) {
+                double height = canvasAspect / (prefix[j] - prefix[i]);
+                double value = best[i] + (height - targetHeight) * (height - targetHeight);
+                if (value < best[j]) {
+                    best[j] = value;
+                    rowStart[j] = i;
+                }
+            }
+        }
+
+        // 回溯出各行的起点（从后往前），再从上往下排布
+        int rows = 0;
+        for (int j = count; j > 0; j = rowStart[j]) rows++;
+        int[] starts = new int[rows + 1];
+        starts[rows] = count;
+        int row = rows;
+        for (int j = count; j > 0; j = rowStart[j]) {
+            starts[--row] = rowStart[j];
+        }
+
+        double totalHeight = 0;
+        for (int r = 0; r < rows; r++) {
+            totalHeight += canvasAspect / (prefix[starts[r + 1]] - prefix[starts[r]]);
+        }
+
+        int[] spans = new int[count * 4];
+        float[] fractions = new float[count * 4];
+        double top = 0;
+        for (int r = 0; r < rows; r++) {
+            int first = starts[r];
+            int end = starts[r + 1];
+            double rowAspect = prefix[end] - prefix[first];
+            double bottom = r == rows - 1 ? 1 : top + canvasAspect / rowAspect / totalHeight;
+            for (int photo = first; photo < end; photo++) {
+                int i = photo * 4;
+                spans[i] = r;
+                spans[i + 1] = r + 1;
+                spans[i + 2] = photo - first;
+                spans[i + 3] = photo - first + 1;
+                fractions[i] = (float) ((prefix[photo] - prefix[first]) / rowAspect);
+                fractions[i + 1] = (float) top;
+                // 行尾固定为1，避免累积误差留下缝隙
+                fractions[i + 2] = photo == end - 1 ? 1f : (float) ((prefix[photo + 1] - prefix[first]) / rowAspect);
+                fractions[i + 3] = (float) bottom;
+            }
+            top = bottom;
+        }
+        return PackedLayout.fromFractions(spans, fractions);
+    }
+
+    /**
+     * 各行等高时正好填满画布的行高：行数 × 行高 = 1，且每行宽高比之和 × 行高 = canvasAspect
+     */
+    private static double targetRowHeight(double totalAspect, float canvasAspect) {
+        return Math.sqrt(canvasAspect / totalAspect);
+    }
+
+    /**
+     * 默认每行最多为平均每行张数的2倍（至少2张），行数较多时DP仍是线性的
+     */
+    static int defaultMaxPerRow(float[] photoAspects, float canvasAspect) {
+        double totalAspect = 0;
+        for (float aspect : photoAspects) totalAspect += aspect;
+        double rows = Math.max(1, Math.round(1 / targetRowHeight(totalAspect, canvasAspect)));
+        return (int) Math.max(2, Math.ceil(2 * photoAspects.length / rows));
+    }
+}
@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -12,28 +13,52 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.appbar.MaterialToolbar;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 自定义布局编辑器Activity
  */
 public class LayoutEditorActivity extends AppCompatActivity {
     
+    // 返回结果：布局通过LayoutRegistry按引用传递，Intent里通常只有令牌
+    public static final String EXTRA_LAYOUT_TOKEN = "layout_token";
+    // 布局库中的id，保存失败时没有；令牌失效（进程被回收）时按id从布局库读取
+    public static final String EXTRA_LAYOUT_ID = "layout_id";
+    // 只在保存失败时放入的格子跨度（每格4个int），令牌失效时的后备
+    public static final String EXTRA_LAYOUT_SPANS = "layout_spans";
+    public static final String EXTRA_CELL_COUNT = "cell_count";
+    
     private GridEditorView gridEditor;
-    private SeekBar seekRows, seekColumns;
-    private TextView tvRows, tvColumns, tvCellCount;
-    private Button btnMerge, btnDelete, btnAutoFill, btnReset, btnSave;
+    // 矩形填充时格子长宽比的上限
+    private static final float FILL_MAX_ASPECT = 2f;
+    
+    private SeekBar seekRows, seekColumns, seekTargetCount;
+    private TextView tvRows, tvColumns, tvTargetCount, tvCellCount;
+    private CheckBox checkFillRectangles, checkLimitAspect, checkLiveFill;
+    private Button btnMerge, btnDelete, btnAutoFill, btnReset, btnUndo, btnRedo, btnSave;
+    // 写布局文件在后台进行
+    private ExecutorService saveExecutor;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_layout_editor);
         
+        saveExecutor = Executors.newSingleThreadExecutor();
         initViews();
         setupListeners();
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (saveExecutor != null) {
+            saveExecutor.shutdown();
+        }
+    }
+    
     private void initViews() {
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         toolbar.setNavigationOnClickListener(v -> finish());
@@ -44,11 +69,18 @@ public class LayoutEditorActivity extends AppCompatActivity {
         tvRows = findViewById(R.id.tv_rows);
         tvColumns = findViewById(R.id.tv_columns);
         tvCellCount = findViewById(R.id.tv_cell_count);
+        seekTargetCount = findViewById(R.id.seek_target_count);
+        tvTargetCount = findViewById(R.id.tv_target_count);
+        checkFillRectangles = findViewById(R.id.check_fill_rectangles);
+        checkLimitAspect = findViewById(R.id.check_limit_aspect);
+        checkLiveFill = findViewById(R.id.check_live_fill);
         
         btnMerge = findViewById(R.id.btn_merge);
         btnDelete = findViewById(R.id.btn_delete);
         btnAutoFill = findViewById(R.id.btn_auto_fill);
         btnReset = findViewById(R.id.btn_reset);
+        btnUndo = findViewById(R.id.btn_undo);
+        btnRedo = findViewById(R.id.btn_redo);
         btnSave = findViewById(R.id.btn_save);
         
         updateCellCount();
@@ -62,6 +94,7 @@ public class LayoutEditorActivity extends AppCompatActivity {
                 tvRows.setText(String.valueOf(progress));
                 if (fromUser) {
                     gridEditor.setGridSize(progress, seekColumns.getProgress());
+                    fillIfLive();
                     updateCellCount();
                 }
             }
@@ -80,6 +113,7 @@ public class LayoutEditorActivity extends AppCompatActivity {
                 tvColumns.setText(String.valueOf(progress));
                 if (fromUser) {
                     gridEditor.setGridSize(seekRows.getProgress(), progress);
+                    fillIfLive();
                     updateCellCount();
                 }
             }
@@ -91,6 +125,20 @@ public class LayoutEditorActivity extends AppCompatActivity {
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
         
+        // 填充目标格子数，0为不限
+        seekTargetCount.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                tvTargetCount.setText(progress == 0 ? "不限" : String.valueOf(progress));
+            }
+            
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+        
         // 合并按钮
         btnMerge.setOnClickListener(v -> {
             if (gridEditor.mergeSelectedCells()) {
@@ -110,7 +158,7 @@ public class LayoutEditorActivity extends AppCompatActivity {
         
         // 自动填充按钮
         btnAutoFill.setOnClickListener(v -> {
-            gridEditor.autoFill();
+            autoFill();
             Toast.makeText(this, "已自动填充剩余空格", Toast.LENGTH_SHORT).show();
             updateCellCount();
         });
@@ -122,27 +170,88 @@ public class LayoutEditorActivity extends AppCompatActivity {
             updateCellCount();
         });
         
+        // 撤销/重做按钮
+        btnUndo.setOnClickListener(v -> {
+            if (gridEditor.undo()) {
+                updateCellCount();
+            }
+        });
+        
+        btnRedo.setOnClickListener(v -> {
+            if (gridEditor.redo()) {
+                updateCellCount();
+            }
+        });
+        
         // 保存按钮
         btnSave.setOnClickListener(v -> saveLayout());
     }
     
+    private void autoFill() {
+        if (checkFillRectangles.isChecked()) {
+            gridEditor.autoFillRectangles(seekTargetCount.getProgress(),
+                checkLimitAspect.isChecked() ? FILL_MAX_ASPECT : 0f);
+        } else {
+            gridEditor.autoFill();
+        }
+    }
+    
+    /**
+     * 勾选了实时填充时，行列数变化后立即重新填充（32×32网格也只需几毫秒）
+     */
+    private void fillIfLive() {
+        if (checkLiveFill.isChecked()) {
+            autoFill();
+        }
+    }
+    
     private void updateCellCount() {
         int count = gridEditor.getCellCount();
         tvCellCount.setText(String.format("当前格子数：%d", count));
+        btnUndo.setEnabled(gridEditor.canUndo());
+        btnRedo.setEnabled(gridEditor.canRedo());
     }
     
     private void saveLayout() {
-        List<GridCell> cells = gridEditor.getCells();
+        PackedLayout layout = gridEditor.toLayout();
         
-        if (cells.isEmpty()) {
+        if (layout.getCellCount() == 0) {
             Toast.makeText(this, "请先创建布局", Toast.LENGTH_SHORT).show();
             return;
         }
         
-        // 返回创建的布局
+        // 保存到布局库，之后可在布局列表的"我的布局"中再次使用；保存期间禁止重复点击
+        btnSave.setEnabled(false);
+        String name = String.format("%d格 %d×%d", layout.getCellCount(), layout.getRowCount(), layout.getColumnCount());
+        LayoutLibrary library = LayoutLibrary.get(this);
+        saveExecutor.execute(() -> {
+            LayoutLibrary.Entry saved = null;
+            try {
+                saved = library.save(name, layout);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            LayoutLibrary.Entry entry = saved;
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                finishWithLayout(layout, entry);
+            });
+        });
+    }
+    
+    private void finishWithLayout(PackedLayout layout, LayoutLibrary.Entry entry) {
         Intent result = new Intent();
-        result.putExtra("cell_count", cells.size());
-        result.putParcelableArrayListExtra("grid_cells", new ArrayList<>(cells));
+        if (entry != null) {
+            result.putExtra(EXTRA_LAYOUT_ID, entry.id);
+        } else {
+            // 没有布局库可以回退，带上紧凑的跨度数组，进程被回收后仍能取回布局
+            result.putExtra(EXTRA_LAYOUT_SPANS, layout.spans());
+            Toast.makeText(this, "布局保存失败，仅本次使用", Toast.LENGTH_SHORT).show();
+        }
+        
+        // 返回创建的布局，正常情况下不经过Binder序列化格子
+        result.putExtra(EXTRA_CELL_COUNT, layout.getCellCount());
+        result.putExtra(EXTRA_LAYOUT_TOKEN, LayoutRegistry.register(layout));
         setResult(Activity.RESULT_OK, result);
         finish();
     }
@@ -0,0 +1,338 @@
+package com.yoyofloatingclock;
+
+import android.content.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 本地保存的自定义布局库
+ *
+ * 每个布局一个 <id>.layout 文件，另有一个 index.bin 记录所有布局的摘要（名称、格子数、行列数），
+ * 列出布局时只读索引，格子数据在需要时（如绘制缩略图、应用布局）才读取。
+ * 文件格式都是varint编码：格子的起点和跨度通常都小于128，每个格子只占4个字节。
+ * 布局文件里也带有摘要，索引丢失或损坏时可以扫描布局文件重建。
+ *
+ * 索引：MAGIC_INDEX, 版本, nextId, 条目数, 条目...
+ * 布局：MAGIC_LAYOUT, 版本, 条目, 每个格子 rowStart, rowSpan, colStart, colSpan
+ * 条目：id, 创建时间(ms), 名称(UTF-8长度 + 字节), 格子数, 行数, 列数
+ */
+public class LayoutLibrary {
+
+    private static final int MAGIC_INDEX = 0x594C4958;   // "YLIX"
+    private static final int MAGIC_LAYOUT = 0x594C4C59;  // "YLLY"
+    private static final int VERSION = 1;
+    private static final String DIR_NAME = "layouts";
+    private static final String INDEX_NAME = "index.bin";
+    private static final String LAYOUT_SUFFIX = ".layout";
+
+    /**
+     * 布局摘要，列表显示只需要这些
+     */
+    public static final class Entry {
+        public final long id;
+        public final long createdAt;
+        public final String name;
+        public final int cellCount;
+        public final int rows;
+        public final int columns;
+
+        Entry(long id, long createdAt, String name, int cellCount, int rows, int columns) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.name = name;
+            this.cellCount = cellCount;
+            this.rows = rows;
+            this.columns = columns;
+        }
+    }
+
+    private static volatile LayoutLibrary instance;
+
+    private final File directory;
+    // 首次访问时从索引读取，之后保存在内存里
+    private List<Entry> entries;
+    private long nextId = 1;
+
+    public LayoutLibrary(File directory) {
+        this.directory = directory;
+    }
+
+    public static LayoutLibrary get(Context context) {
+        if (instance == null) {
+            synchronized (LayoutLibrary.class) {
+                if (instance == null) {
+                    instance = new LayoutLibrary(new File(context.getApplicationContext().getFilesDir(), DIR_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 所有保存的布局，按保存顺序（最新的在最后）
+     */
+    public synchronized List<Entry> list() {
+        ensureLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * 保存布局，返回它的摘要
+     */
+    public synchronized Entry save(String name, PackedLayout layout) throws IOException {
+        if (layout.getCellCount() == 0) {
+            throw new IllegalArgumentException("不能保存空布局");
+        }
+        if (layout.isFractional() || layout.hasTrackWeights()) {
+            throw new IllegalArgumentException("只支持等分网格布局");
+        }
+        ensureLoaded();
+        Entry entry = new Entry(nextId, System.currentTimeMillis(), name,
+            layout.getCellCount(), layout.getRowCount(), layout.getColumnCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + layout.getCellCount() * 4);
+        writeVarint(out, MAGIC_LAYOUT);
+        writeVarint(out, VERSION);
+        writeEntry(out, entry);
+        int[] spans = layout.spans();
+        for (int i = 0; i < spans.length; i += 4) {
+            writeVarint(out, spans[i]);
+            writeVarint(out, spans[i + 1] - spans[i]);
+            writeVarint(out, spans[i + 2]);
+            writeVarint(out, spans[i + 3] - spans[i + 2]);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        writeAtomically(layoutFile(entry.id), out.toByteArray());
+
+        entries.add(entry);
+        nextId++;
+        writeIndex();
+        return entry;
+    }
+
+    /**
+     * 读取布局的格子数据，布局不存在或文件损坏时返回null
+     */
+    public synchronized PackedLayout load(long id) {
+        try {
+            Reader reader = new Reader(readFully(layoutFile(id)));
+            if (reader.readVarint() != MAGIC_LAYOUT || reader.readVarint() != VERSION) return null;
+            Entry entry = readEntry(reader);
+            // 每个格子至少4个字节，先按剩余长度检查格子数，损坏的文件不会分配超大数组
+            if (entry.cellCount > reader.remaining() / 4) {
+                throw new IllegalArgumentException("数据不完整");
+            }
+            int[] spans = new int[entry.cellCount * 4];
+            for (int i = 0; i < spans.length; i += 4) {
+                spans[i] = (int) reader.readVarint();
+                spans[i + 1] = spans[i] + (int) reader.readVarint();
+                spans[i + 2] = (int) reader.readVarint();
+                spans[i + 3] = spans[i + 2] + (int) reader.readVarint();
+            }
+            return new PackedLayout(spans);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 删除布局
+     *
+     * @return 布局是否存在
+     */
+    public synchronized boolean delete(long id) throws IOException {
+        ensureLoaded();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).id == id) {
+                entries.remove(i);
+                writeIndex();
+                layoutFile(id).delete();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== 索引 ====================
+
+    private void ensureLoaded() {
+        if (entries != null) return;
+        entries = new ArrayList<>();
+        File index = new File(directory, INDEX_NAME);
+        if (index.isFile()) {
+            try {
+                Reader reader = new Reader(readFully(index));
+                if (reader.readVarint() == MAGIC_INDEX && reader.readVarint() == VERSION) {
+                    nextId = reader.readVarint();
+                    int count = (int) reader.readVarint();
+                    for (int i = 0; i < count; i++) {
+                        entries.add(readEntry(reader));
+                    }
+                    return;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                entries.clear();
+            }
+        }
+        rebuildIndex();
+    }
+
+    /**
+     * 索引不可用时扫描布局文件重建
+     */
+    private void rebuildIndex() {
+        nextId = 1;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(LAYOUT_SUFFIX));
+        if (files == null || files.length == 0) return;
+        for (File file : files) {
+            try {
+                Reader reader = new Reader(readFully(file));
+                if (reader.readVarint() != MAGIC_LAYOUT || reader.readVarint() != VERSION) continue;
+                Entry entry = readEntry(reader);
+                entries.add(entry);
+                nextId = Math.max(nextId, entry.id + 1);
+            } catch (IOException | IllegalArgumentException e) {
+                // 跳过损坏的文件
+            }
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.id, b.id));
+        try {
+            writeIndex();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + entries.size() * 24);
+        writeVarint(out, MAGIC_INDEX);
+        writeVarint(out, VERSION);
+        writeVarint(out, nextId);
+        writeVarint(out, entries.size());
+        for (Entry entry : entries) {
+            writeEntry(out, entry);
+        }
+        writeAtomically(new File(directory, INDEX_NAME), out.toByteArray());
+    }
+
+    private File layoutFile(long id) {
+        return new File(directory, id + LAYOUT_SUFFIX);
+    }
+
+    // ==================== 编码 ====================
+
+    private static void writeEntry(ByteArrayOutputStream out, Entry entry) {
+        writeVarint(out, entry.id);
+        writeVarint(out, entry.createdAt);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, name.length);
+        out.write(name, 0, name.length);
+        writeVarint(out, entry.cellCount);
+        writeVarint(out, entry.rows);
+        writeVarint(out, entry.columns);
+    }
+
+    private static Entry readEntry(Reader reader) {
+        long id = reader.readVarint();
+        long createdAt = reader.readVarint();
+        String name = reader.readString((int) reader.readVarint());
+        int cellCount = (int) reader.readVarint();
+        int rows = (int) reader.readVarint();
+        int columns = (int) reader.readVarint();
+        if (cellCount < 0 || rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("数据损坏");
+        }
+        return new Entry(id, createdAt, name, cellCount, rows, columns);
+    }
+
+    /**
+     * 无符号LEB128：每字节低7位是数据，最高位表示后面还有字节
+     */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("varint不支持负数: " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * 顺序读取字节数组；数据不完整时抛出IllegalArgumentException
+     */
+    static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("数据不完整");
+                }
+                int b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("varint过长");
+        }
+
+        int remaining() {
+            return data.length - position;
+        }
+
+        String readString(int length) {
+            if (length < 0 || position + length > data.length) {
+                throw new IllegalArgumentException("数据不完整");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) throw new IOException("文件被截断: " + file);
+                offset += read;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 先写临时文件再改名，避免读到写了一半的文件
+     */
+    private static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("无法写入: " + file);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -15,7 +14,10 @@ import java.util.List;
  */
 public class LayoutPreviewView extends View {
     
-    private List<GridCell> gridCells;
+    private PackedLayout layout;
+    // 本视图自己的bounds缓冲，布局或尺寸变化时重新计算，滚动列表时不分配对象
+    private float[] bounds;
+    private boolean boundsDirty = true;
     private Paint linePaint;
     private Paint bgPaint;
     
@@ -38,33 +40,45 @@ public class LayoutPreviewView extends View {
         bgPaint.setColor(0xFF888888);  // 灰色背景
     }
     
-    public void setGridCells(List<GridCell> cells) {
-        this.gridCells = cells;
+    public void setLayout(PackedLayout layout) {
+        this.layout = layout;
+        boundsDirty = true;
         invalidate();
     }
     
+    public void setGridCells(List<GridCell> cells) {
+        setLayout(PackedLayout.fromCells(cells));
+    }
+    
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        boundsDirty = true;
+    }
+    
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         
-        if (gridCells == null || gridCells.isEmpty()) {
+        if (layout == null || layout.getCellCount() == 0) {
             // 绘制单色背景
             canvas.drawColor(0xFF888888);
             return;
         }
         
-        int width = getWidth();
-        int height = getHeight();
-        
-        // 计算bounds
-        List<RectF> bounds = PuzzleLayoutEnhanced.calculateBounds(
-            gridCells, width, height, 2  // 使用小间距
-        );
+        int length = layout.getCellCount() * 4;
+        if (boundsDirty) {
+            if (bounds == null || bounds.length < length) {
+                bounds = new float[length];
+            }
+            layout.computeBounds(getWidth(), getHeight(), 2, bounds);  // 使用小间距
+            boundsDirty = false;
+        }
         
         // 绘制每个格子
-        for (RectF bound : bounds) {
-            canvas.drawRect(bound, bgPaint);
-            canvas.drawRect(bound, linePaint);
+        for (int i = 0; i < length; i += 4) {
+            canvas.drawRect(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3], bgPaint);
+            canvas.drawRect(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3], linePaint);
         }
     }
 }
@@ -0,0 +1,48 @@
+package com.yoyofloatingclock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 同一进程内的Activity之间传递布局 - 只在Intent里放一个long令牌，布局对象按引用取回
+ *
+ * 登记表只在内存里：如果结果送达前进程被回收，令牌在新进程里取不到布局，
+ * 调用方需要有后备（编辑器同时放入布局库的id，保存失败时放入格子跨度数组）。
+ * 布局是不可变的，取回的就是放入的同一个对象。
+ * 结果没有被取走（如页面已关闭）时，只保留最近的几个，旧的自动丢弃。
+ */
+public final class LayoutRegistry {
+
+    static final int MAX_PENDING = 4;
+
+    private static long nextToken = 1;
+    private static final Map<Long, PackedLayout> pending =
+        new LinkedHashMap<Long, PackedLayout>(MAX_PENDING + 1, 1f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PackedLayout> eldest) {
+                return size() > MAX_PENDING;
+            }
+        };
+
+    private LayoutRegistry() {
+    }
+
+    /**
+     * 登记一个布局，返回放进Intent的令牌（总是大于0）
+     */
+    public static synchronized long register(PackedLayout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("layout不能为null");
+        }
+        long token = nextToken++;
+        pending.put(token, layout);
+        return token;
+    }
+
+    /**
+     * 取回并移除布局，令牌无效或已被取走时返回null
+     */
+    public static synchronized PackedLayout take(long token) {
+        return pending.remove(token);
+    }
+}
@@ -0,0 +1,231 @@
+package com.yoyofloatingclock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 自动选择布局 - 纯Java实现，可在JVM上单元测试
+ *
+ * 根据各张图片和画布的宽高比，在预设的布局变体以及自动生成的按行/按列划分中，
+ * 找出裁切损失最小的布局和图片摆放顺序。
+ * 单个格子的损失 = 格子面积占比 × 居中裁切时被裁掉的比例（1 - 较小宽高比/较大宽高比）。
+ *
+ * 每个候选布局内的图片分配用状态压缩DP精确求解（O(2^n·n)）；
+ * 候选之间做分支限界：每个格子取最合适图片的损失之和作为下界，下界不优于当前最优的候选直接跳过。
+ */
+public class LayoutSolver {
+
+    // DP按位集合枚举，超过时不再求解
+    public static final int MAX_PHOTOS = 12;
+    // 自动生成的划分最多几行（列），每行（列）最多几张，行内格子数的最小公倍数不超过12
+    private static final int MAX_TRACKS = 4;
+    private static final int MAX_PER_TRACK = 4;
+
+    /**
+     * 求解结果
+     */
+    public static final class Result {
+        public final PackedLayout layout;
+        // 来自预设变体时不为null，自动生成的划分为null
+        public final PuzzleLayoutEnhanced.LayoutVariant variant;
+        // 第i个格子放第photoForCell[i]张图片
+        public final int[] photoForCell;
+        // 整个画布的裁切损失，0表示完全不裁切
+        public final float cropLoss;
+
+        Result(PackedLayout layout, PuzzleLayoutEnhanced.LayoutVariant variant, int[] photoForCell, float cropLoss) {
+            this.layout = layout;
+            this.variant = variant;
+            this.photoForCell = photoForCell;
+            this.cropLoss = cropLoss;
+        }
+    }
+
+    private final float[] photoAspects;
+    private final float canvasAspect;
+    private final int photoCount;
+    // 复用的计算缓冲
+    private final float[] cost;          // 格子 × 图片
+    private final float[] dp;            // 已放图片的集合 -> 最小损失
+    private final byte[] choice;         // 集合中最后放入的图片
+    private final float[] cellAspects;
+    private final float[] cellAreas;
+
+    private Result best;
+
+    private LayoutSolver(float[] photoAspects, float canvasAspect) {
+        this.photoAspects = photoAspects;
+        this.canvasAspect = canvasAspect;
+        this.photoCount = photoAspects.length;
+        this.cost = new float[photoCount * photoCount];
+        this.dp = new float[1 << photoCount];
+        this.choice = new byte[1 << photoCount];
+        this.cellAspects = new float[photoCount];
+        this.cellAreas = new float[photoCount];
+    }
+
+    /**
+     * @param photoAspects 各图片的宽高比（宽/高，已考虑EXIF旋转）
+     * @param canvasAspect 画布宽高比（宽/高）
+     * @return 最优布局；图片数不在 1..MAX_PHOTOS 范围内时返回null
+     */
+    public static Result solve(float[] photoAspects, float canvasAspect) {
+        int count = photoAspects.length;
+        if (count == 0 || count > MAX_PHOTOS || !(canvasAspect > 0)) return null;
+        for (float aspect : photoAspects) {
+            if (!(aspect > 0)) {
+                throw new IllegalArgumentException("无效的图片宽高比: " + aspect);
+            }
+        }
+
+        LayoutSolver solver = new LayoutSolver(photoAspects.clone(), canvasAspect);
+        for (PuzzleLayoutEnhanced.LayoutVariant variant : PuzzleLayoutEnhanced.LayoutVariant.values()) {
+            if (variant.getImageCount() == count) {
+                solver.evaluate(variant.getLayout(), variant);
+            }
+        }
+        for (PackedLayout layout : generatePartitions(count)) {
+            solver.evaluate(layout, null);
+        }
+        return solver.best;
+    }
+
+    /**
+     * 自动生成的候选：把n张图片分成若干行，每行等分；以及对应的按列划分
+     */
+    static List<PackedLayout> generatePartitions(int count) {
+        List<PackedLayout> layouts = new ArrayList<>();
+        int[] parts = new int[MAX_TRACKS];
+        collectCompositions(count, 0, parts, layouts);
+        return layouts;
+    }
+
+    private static void collectCompositions(int remaining, int depth, int[] parts, List<PackedLayout> out) {
+        if (remaining == 0) {
+            int[] tracks = Arrays.copyOf(parts, depth);
+            out.add(buildPartition(tracks, false));
+            // 只有一行（列）时转置后与已有候选重复
+            if (depth > 1 || tracks[0] > 1) {
+                out.add(buildPartition(tracks, true));
+            }
+            return;
+        }
+        if (depth == MAX_TRACKS) return;
+        for (int part = 1; part <= Math.min(MAX_PER_TRACK, remaining); part++) {
+            parts[depth] = part;
+            collectCompositions(remaining - part, depth + 1, parts, out);
+        }
+    }
+
+    /**
+     * 每行（transposed时为每列）tracks[i]个等分的格子；底层网格的列数取各行格子数的最小公倍数
+     */
+    private static PackedLayout buildPartition(int[] tracks, boolean transposed) {
+        int lcm = 1;
+        int cellCount = 0;
+        for (int track : tracks) {
+            lcm = lcm / gcd(lcm, track) * track;
+            cellCount += track;
+        }
+        int[] spans = new int[cellCount * 4];
+        int i = 0;
+        for (int row = 0; row < tracks.length; row++) {
+            int width = lcm / tracks[row];
+            for (int column = 0; column < tracks[row]; column++) {
+                int start = column * width;
+                if (transposed) {
+                    spans[i] = start;
+                    spans[i + 1] = start + width;
+                    spans[i + 2] = row;
+                    spans[i + 3] = row + 1;
+                } else {
+                    spans[i] = row;
+                    spans[i + 1] = row + 1;
+                    spans[i + 2] = start;
+                    spans[i + 3] = start + width;
+                }
+                i += 4;
+            }
+        }
+        return new PackedLayout(spans);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * 评估一个候选布局，比当前最优更好时替换
+     */
+    private void evaluate(PackedLayout layout, PuzzleLayoutEnhanced.LayoutVariant variant) {
+        if (layout.getCellCount() != photoCount) return;
+
+        // 不计间距时格子的宽高比与面积占比（画布高为1、宽为canvasAspect），按行列权重计算
+        for (int cell = 0; cell < photoCount; cell++) {
+            float width = layout.getColumnEdge(layout.getColEnd(cell)) - layout.getColumnEdge(layout.getColStart(cell));
+            float height = layout.getRowEdge(layout.getRowEnd(cell)) - layout.getRowEdge(layout.getRowStart(cell));
+            cellAspects[cell] = width * canvasAspect / height;
+            cellAreas[cell] = width * height;
+        }
+
+        float lowerBound = 0;
+        for (int cell = 0; cell < photoCount; cell++) {
+            float cellMin = Float.MAX_VALUE;
+            for (int photo = 0; photo < photoCount; photo++) {
+                float value = cellAreas[cell] * cropLoss(cellAspects[cell], photoAspects[photo]);
+                cost[cell * photoCount + photo] = value;
+                cellMin = Math.min(cellMin, value);
+            }
+            lowerBound += cellMin;
+        }
+        if (best != null && lowerBound >= best.cropLoss) {
+            return;
+        }
+
+        // dp[mask]：前popcount(mask)个格子放入mask中的图片时的最小损失
+        int full = (1 << photoCount) - 1;
+        Arrays.fill(dp, Float.MAX_VALUE);
+        dp[0] = 0;
+        for (int mask = 0; mask < full; mask++) {
+            float current = dp[mask];
+            if (current == Float.MAX_VALUE) continue;
+            int row = Integer.bitCount(mask) * photoCount;
+            for (int photo = 0; photo < photoCount; photo++) {
+                if ((mask & (1 << photo)) != 0) continue;
+                int next = mask | (1 << photo);
+                float value = current + cost[row + photo];
+                if (value < dp[next]) {
+                    dp[next] = value;
+                    choice[next] = (byte) photo;
+                }
+            }
+        }
+
+        float total = dp[full];
+        if (best != null && total >= best.cropLoss) return;
+
+        int[] photoForCell = new int[photoCount];
+        int mask = full;
+        for (int cell = photoCount - 1; cell >= 0; cell--) {
+            int photo = choice[mask];
+            photoForCell[cell] = photo;
+            mask &= ~(1 << photo);
+        }
+        best = new Result(layout, variant, photoForCell, total);
+    }
+
+    /**
+     * 宽高比为photoAspect的图片居中裁切填满宽高比为cellAspect的格子时，被裁掉的比例
+     */
+    static float cropLoss(float cellAspect, float photoAspect) {
+        return cellAspect > photoAspect
+            ? 1f - photoAspect / cellAspect
+            : 1f - cellAspect / photoAspect;
+    }
+}
@@ -0,0 +1,169 @@
+package com.yoyofloatingclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 布局选择列表的缩略图缓存 - 每个布局只绘制一次到小位图，
+ * 内存中按LRU保留，磁盘上按(布局, 屏幕密度)保存PNG，再次打开页面时直接显示，不再创建自定义绘制的View
+ */
+public class LayoutThumbnailCache {
+
+    // 缩略图样式变化时递增，使旧的磁盘缓存失效
+    private static final int STYLE_VERSION = 1;
+    private static final String DIR_NAME = "layout_thumbnails";
+    // 与LayoutPreviewView一致的样式
+    private static final int CELL_COLOR = 0xFF888888;
+    private static final int LINE_WIDTH = 2;
+    private static final int SPACING = 2;
+
+    private static volatile LayoutThumbnailCache instance;
+
+    private final File directory;
+    private final int densityDpi;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "layout-thumbnails");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    // 约60个布局 × 200px见方，按字节计算
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(8 * 1024 * 1024) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    private LayoutThumbnailCache(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.directory = new File(appContext.getCacheDir(), DIR_NAME);
+        this.densityDpi = appContext.getResources().getDisplayMetrics().densityDpi;
+    }
+
+    public static LayoutThumbnailCache get(Context context) {
+        if (instance == null) {
+            synchronized (LayoutThumbnailCache.class) {
+                if (instance == null) {
+                    instance = new LayoutThumbnailCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 把布局缩略图显示到ImageView：内存命中时立即显示，否则在后台读取磁盘或绘制后再显示
+     *
+     * @param name   布局的唯一名称（如变体的枚举名）
+     * @param sizePx 缩略图边长
+     */
+    public void bind(ImageView imageView, String name, PackedLayout layout, int sizePx) {
+        bind(imageView, name, () -> layout, sizePx);
+    }
+
+    /**
+     * 布局数据按需读取：只有内存和磁盘缓存都没有时，才在后台线程调用source
+     *
+     * @param source 返回null时绘制为空白缩略图
+     */
+    public void bind(ImageView imageView, String name, Supplier<PackedLayout> source, int sizePx) {
+        String key = name + "_" + sizePx + "_" + densityDpi + "_v" + STYLE_VERSION;
+        // ImageView可能被复用，回调时只在仍对应同一个布局时才设置
+        imageView.setTag(R.id.layout_preview, key);
+
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+
+        imageView.setImageDrawable(null);
+        executor.execute(() -> {
+            Bitmap bitmap = loadOrRender(key, source, sizePx);
+            mainHandler.post(() -> {
+                memoryCache.put(key, bitmap);
+                if (key.equals(imageView.getTag(R.id.layout_preview))) {
+                    imageView.setImageBitmap(bitmap);
+                }
+            });
+        });
+    }
+
+    /**
+     * 清空内存缓存，磁盘缓存保留；供测量冷启动耗时使用
+     */
+    void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    /**
+     * 后台线程：先读磁盘，没有时绘制并写入磁盘
+     */
+    private Bitmap loadOrRender(String key, Supplier<PackedLayout> source, int sizePx) {
+        File file = new File(directory, key + ".png");
+        if (file.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) return bitmap;
+        }
+
+        PackedLayout layout = source.get();
+        Bitmap bitmap = render(layout != null ? layout : new PackedLayout(new int[0]), sizePx);
+        if (directory.isDirectory() || directory.mkdirs()) {
+            // 先写临时文件再改名，避免读到写了一半的缓存
+            File temp = new File(directory, key + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 按LayoutPreviewView的样式把布局绘制到位图
+     */
+    static Bitmap render(PackedLayout layout, int sizePx) {
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (layout.getCellCount() == 0) {
+            canvas.drawColor(CELL_COLOR);
+            return bitmap;
+        }
+
+        Paint fillPaint = new Paint();
+        fillPaint.setColor(CELL_COLOR);
+        Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        linePaint.setColor(Color.WHITE);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(LINE_WIDTH);
+
+        float[] bounds = new float[layout.getCellCount() * 4];
+        layout.computeBounds(sizePx, sizePx, SPACING, bounds);
+        for (int i = 0; i < bounds.length; i += 4) {
+            canvas.drawRect(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3], fillPaint);
+            canvas.drawRect(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3], linePaint);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,307 @@
+package com.yoyofloatingclock;
+
+import android.graphics.Color;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.card.MaterialCardView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 布局选择列表的适配器 - 最前面是保存的自定义布局，之后按图片数量分组：分组标题 + 该组的布局卡片
+ *
+ * 卡片只在滚动到可见时创建并复用，缩略图由LayoutThumbnailCache提供；
+ * 选中项变化时只通知旧、新两个位置，并通过payload只更新描边。
+ */
+public class LayoutVariantAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    public interface OnVariantClickListener {
+        void onVariantClick(PuzzleLayoutEnhanced.LayoutVariant variant);
+    }
+
+    public interface OnSavedLayoutListener {
+        void onSavedLayoutClick(LayoutLibrary.Entry entry);
+
+        void onSavedLayoutLongClick(LayoutLibrary.Entry entry);
+    }
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_VARIANT = 1;
+    // 只更新选中状态时的payload
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final int MIN_COUNT = 2;
+    private static final int MAX_COUNT = 9;
+    // 保存的布局的item id从这里开始，不与变体的ordinal冲突
+    private static final long SAVED_ID_OFFSET = 1L << 32;
+
+    // 列表项：分组标题存放图片数量（保存的布局为0），布局卡片存放对应的变体或保存的布局
+    private static final class Item {
+        final int photoCount;
+        final int variantCount;
+        final PuzzleLayoutEnhanced.LayoutVariant variant;
+        final LayoutLibrary.Entry saved;
+
+        Item(int photoCount, int variantCount, PuzzleLayoutEnhanced.LayoutVariant variant,
+             LayoutLibrary.Entry saved) {
+            this.photoCount = photoCount;
+            this.variantCount = variantCount;
+            this.variant = variant;
+            this.saved = saved;
+        }
+
+        boolean isHeader() {
+            return variant == null && saved == null;
+        }
+    }
+
+    private final List<Item> items = new ArrayList<>();
+    // 变体ordinal -> 列表位置，选中项变化时不用遍历列表
+    private final int[] positionByOrdinal = new int[PuzzleLayoutEnhanced.LayoutVariant.values().length];
+    private final LayoutThumbnailCache thumbnailCache;
+    private final LayoutLibrary library;
+    private final int thumbnailSize;
+    private final int selectedStrokeColor;
+    private final OnVariantClickListener listener;
+    private OnSavedLayoutListener savedListener;
+    private List<LayoutLibrary.Entry> savedLayouts = new ArrayList<>();
+    private PuzzleLayoutEnhanced.LayoutVariant selectedVariant;
+    private long selectedSavedId = -1;
+
+    public LayoutVariantAdapter(LayoutThumbnailCache thumbnailCache, LayoutLibrary library, int thumbnailSize,
+                                int selectedStrokeColor, OnVariantClickListener listener) {
+        this.thumbnailCache = thumbnailCache;
+        this.library = library;
+        this.thumbnailSize = thumbnailSize;
+        this.selectedStrokeColor = selectedStrokeColor;
+        this.listener = listener;
+        setHasStableIds(true);
+        rebuildItems();
+    }
+
+    private void rebuildItems() {
+        items.clear();
+        // 保存的布局最新的在前
+        if (!savedLayouts.isEmpty()) {
+            items.add(new Item(0, savedLayouts.size(), null, null));
+            for (int i = savedLayouts.size() - 1; i >= 0; i--) {
+                items.add(new Item(0, 0, null, savedLayouts.get(i)));
+            }
+        }
+
+        // 显示2-9张图片的所有布局，按数量分组
+        Arrays.fill(positionByOrdinal, RecyclerView.NO_POSITION);
+        for (int count = MIN_COUNT; count <= MAX_COUNT; count++) {
+            List<PuzzleLayoutEnhanced.LayoutVariant> variants = PuzzleLayoutEnhanced.getVariantsForCount(count);
+            if (variants.isEmpty()) continue;
+            items.add(new Item(count, variants.size(), null, null));
+            for (PuzzleLayoutEnhanced.LayoutVariant variant : variants) {
+                positionByOrdinal[variant.ordinal()] = items.size();
+                items.add(new Item(count, 0, variant, null));
+            }
+        }
+    }
+
+    /**
+     * 更新保存的布局列表（按保存顺序）
+     */
+    public void setSavedLayouts(List<LayoutLibrary.Entry> entries) {
+        int oldSize = savedGroupSize();
+        savedLayouts = new ArrayList<>(entries);
+        rebuildItems();
+        // "我的布局"分组在最前面，只通知这一组的位置，后面的预设布局不会重新绑定
+        int newSize = savedGroupSize();
+        int common = Math.min(oldSize, newSize);
+        notifyItemRangeChanged(0, common);
+        if (newSize > oldSize) {
+            notifyItemRangeInserted(common, newSize - oldSize);
+        } else if (newSize < oldSize) {
+            notifyItemRangeRemoved(common, oldSize - newSize);
+        }
+    }
+
+    // 分组标题 + 保存的布局，没有保存的布局时整组不显示
+    private int savedGroupSize() {
+        return savedLayouts.isEmpty() ? 0 : savedLayouts.size() + 1;
+    }
+
+    public void setOnSavedLayoutListener(OnSavedLayoutListener listener) {
+        this.savedListener = listener;
+    }
+
+    /**
+     * 更新选中的布局，只重新绑定旧、新两个位置
+     */
+    public void setSelectedVariant(PuzzleLayoutEnhanced.LayoutVariant variant) {
+        clearSavedSelection();
+        if (variant == selectedVariant) return;
+        PuzzleLayoutEnhanced.LayoutVariant previous = selectedVariant;
+        selectedVariant = variant;
+        notifySelectionChanged(previous);
+        notifySelectionChanged(variant);
+    }
+
+    /**
+     * 选中一个保存的布局，同时取消预设变体的选中
+     */
+    public void setSelectedSavedLayout(long id) {
+        setSelectedVariant(null);
+        selectedSavedId = id;
+        notifySavedSelectionChanged(id);
+    }
+
+    private void clearSavedSelection() {
+        long previous = selectedSavedId;
+        selectedSavedId = -1;
+        notifySavedSelectionChanged(previous);
+    }
+
+    private void notifySelectionChanged(PuzzleLayoutEnhanced.LayoutVariant variant) {
+        if (variant == null) return;
+        int position = positionByOrdinal[variant.ordinal()];
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
+    }
+
+    private void notifySavedSelectionChanged(long id) {
+        if (id < 0) return;
+        // 保存的布局倒序排在标题之后
+        for (int i = 0; i < savedLayouts.size(); i++) {
+            if (savedLayouts.get(i).id == id) {
+                notifyItemChanged(savedLayouts.size() - i, PAYLOAD_SELECTION);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return items.get(position).isHeader() ? TYPE_HEADER : TYPE_VARIANT;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Item item = items.get(position);
+        // 分组标题用负数，与变体的ordinal不会冲突
+        if (item.saved != null) return SAVED_ID_OFFSET + item.saved.id;
+        return item.isHeader() ? -1 - item.photoCount : item.variant.ordinal();
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == TYPE_HEADER) {
+            return new HeaderHolder(inflater.inflate(R.layout.item_variant_group_header, parent, false));
+        }
+        return new VariantHolder(inflater.inflate(R.layout.layout_template_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Item item = items.get(position);
+        if (holder instanceof HeaderHolder) {
+            HeaderHolder header = (HeaderHolder) holder;
+            if (item.photoCount == 0) {
+                header.title.setText("我的布局");
+                header.count.setText(String.format("%d个", item.variantCount));
+            } else {
+                header.title.setText(String.format("%d张图片", item.photoCount));
+                header.count.setText(String.format("%d种布局", item.variantCount));
+            }
+            return;
+        }
+
+        VariantHolder variantHolder = (VariantHolder) holder;
+        variantHolder.variant = item.variant;
+        variantHolder.saved = item.saved;
+        // ImageView复用时bind会更新标记，旧布局的缩略图回调不会覆盖新内容
+        if (item.saved != null) {
+            LayoutLibrary.Entry entry = item.saved;
+            variantHolder.name.setText(entry.name);
+            // 格子数据只在缩略图没有缓存时才从文件读取
+            thumbnailCache.bind(variantHolder.preview, "saved_" + entry.id + "_" + entry.createdAt,
+                () -> library.load(entry.id), thumbnailSize);
+        } else {
+            variantHolder.name.setText(item.variant.getDisplayName());
+            thumbnailCache.bind(variantHolder.preview, item.variant.name(), item.variant.getLayout(), thumbnailSize);
+        }
+        bindSelection(variantHolder);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (holder instanceof VariantHolder && payloads.contains(PAYLOAD_SELECTION)) {
+            bindSelection((VariantHolder) holder);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
+    private void bindSelection(VariantHolder holder) {
+        boolean selected = holder.saved != null
+            ? holder.saved.id == selectedSavedId
+            : holder.variant == selectedVariant;
+        if (selected) {
+            holder.card.setStrokeColor(selectedStrokeColor);
+            holder.card.setStrokeWidth(4);
+        } else {
+            holder.card.setStrokeColor(Color.TRANSPARENT);
+            holder.card.setStrokeWidth(2);
+        }
+    }
+
+    private static final class HeaderHolder extends RecyclerView.ViewHolder {
+        final TextView title;
+        final TextView count;
+
+        HeaderHolder(View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.group_title);
+            count = itemView.findViewById(R.id.group_count);
+        }
+    }
+
+    private final class VariantHolder extends RecyclerView.ViewHolder {
+        final MaterialCardView card;
+        final ImageView preview;
+        final TextView name;
+        PuzzleLayoutEnhanced.LayoutVariant variant;
+        LayoutLibrary.Entry saved;
+
+        VariantHolder(View itemView) {
+            super(itemView);
+            card = (MaterialCardView) itemView;
+            preview = itemView.findViewById(R.id.layout_preview);
+            name = itemView.findViewById(R.id.template_name);
+            card.setOnClickListener(v -> {
+                if (saved != null) {
+                    if (savedListener != null) savedListener.onSavedLayoutClick(saved);
+                } else if (variant != null && listener != null) {
+                    listener.onVariantClick(variant);
+                }
+            });
+            card.setOnLongClickListener(v -> {
+                if (saved == null || savedListener == null) return false;
+                savedListener.onSavedLayoutLongClick(saved);
+                return true;
+            });
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.yoyofloatingclock;
+
+/**
+ * 长截图重叠检测 - 纯Java实现，只依赖int[]像素，可在JVM上单元测试
+ *
+ * 先把每一行像素哈希成一个long，再在行哈希序列上匹配：
+ * 1. 两张图顶部相同的行视为固定的状态栏/标题栏，底部相同的行视为固定的导航栏；
+ * 2. 在去掉固定栏后的内容区里，用KMP求"上图内容的最长后缀 = 下图内容的前缀"，即滚动重叠带。
+ * 每对图片的匹配代价为O(高度)。
+ *
+ * 量化只能吸收不跨越量化边界的噪声：0x0F和0x10只差1，量化后却不同。
+ * 所以精确哈希找不到重叠时（典型如JPEG截图），再用逐行亮度采样按容差比较一遍，
+ * 容差匹配对每个候选重叠长度先比首尾两行，大多数错位立刻被排除，
+ * 但在大片重复内容上最坏会退化到O(高度²)。
+ */
+public class OverlapDetector {
+
+    // 重叠少于该行数时视为没有重叠，避免把偶然相同的几行纯色行当作重叠
+    public static final int DEFAULT_MIN_OVERLAP_ROWS = 16;
+
+    // 每个颜色通道只保留高4位，容忍JPEG压缩带来的细微差异
+    private static final int QUANTIZE_MASK = 0xF0F0F0;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    // 容差匹配时每隔几个像素取一个亮度采样
+    private static final int SAMPLE_STEP = 4;
+    // 两行对应采样的亮度差都不超过该值时视为同一行内容
+    private static final int MAX_SAMPLE_DIFF = 16;
+
+    private final int minOverlapRows;
+
+    /**
+     * 检测结果：拼接时上图底部裁掉trimBottomOfFirst行，下图顶部裁掉trimTopOfSecond行
+     */
+    public static class Result {
+        public final int headerRows;         // 固定的顶部栏行数
+        public final int footerRows;         // 固定的底部栏行数
+        public final int overlapRows;        // 内容区的重叠行数
+        public final int trimBottomOfFirst;  // 上图需要裁掉的底部行数
+        public final int trimTopOfSecond;    // 下图需要裁掉的顶部行数
+
+        Result(int headerRows, int footerRows, int overlapRows) {
+            this.headerRows = headerRows;
+            this.footerRows = footerRows;
+            this.overlapRows = overlapRows;
+            if (overlapRows > 0) {
+                this.trimBottomOfFirst = footerRows;
+                this.trimTopOfSecond = headerRows + overlapRows;
+            } else {
+                this.trimBottomOfFirst = 0;
+                this.trimTopOfSecond = 0;
+            }
+        }
+
+        public boolean hasOverlap() {
+            return overlapRows > 0;
+        }
+    }
+
+    /**
+     * 一张图的逐行特征：精确匹配用的行哈希，以及容差匹配用的亮度采样
+     * 调用方可以逐行填入像素，不必持有整张图的int[]
+     */
+    public static final class Rows {
+        private final int width;
+        private final int samples;
+        private final long[] hashes;
+        private final byte[] luma;
+
+        public Rows(int width, int height) {
+            this.width = width;
+            this.samples = (width + SAMPLE_STEP - 1) / SAMPLE_STEP;
+            this.hashes = new long[height];
+            this.luma = new byte[samples * height];
+        }
+
+        public static Rows of(int[] pixels, int width, int height) {
+            Rows rows = new Rows(width, height);
+            for (int y = 0; y < height; y++) {
+                rows.setRow(y, pixels, y * width);
+            }
+            return rows;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return hashes.length;
+        }
+
+        /**
+         * 填入第y行，pixels[offset, offset + width)为该行的ARGB像素
+         */
+        public void setRow(int y, int[] pixels, int offset) {
+            hashes[y] = hashRow(pixels, offset, width);
+            int base = y * samples;
+            for (int s = 0; s < samples; s++) {
+                int color = pixels[offset + s * SAMPLE_STEP];
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                luma[base + s] = (byte) ((r * 77 + g * 150 + b * 29) >> 8);
+            }
+        }
+
+        boolean similar(int row, Rows other, int otherRow) {
+            int a = row * samples;
+            int b = otherRow * samples;
+            for (int s = 0; s < samples; s++) {
+                if (Math.abs((luma[a + s] & 0xFF) - (other.luma[b + s] & 0xFF)) > MAX_SAMPLE_DIFF) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public OverlapDetector() {
+        this(DEFAULT_MIN_OVERLAP_ROWS);
+    }
+
+    public OverlapDetector(int minOverlapRows) {
+        this.minOverlapRows = Math.max(1, minOverlapRows);
+    }
+
+    /**
+     * 计算每一行的哈希
+     *
+     * @param pixels 按行存储的ARGB像素
+     */
+    public static long[] hashRows(int[] pixels, int width, int height) {
+        long[] hashes = new long[height];
+        for (int y = 0; y < height; y++) {
+            hashes[y] = hashRow(pixels, y * width, width);
+        }
+        return hashes;
+    }
+
+    /**
+     * 计算单行像素的哈希，调用方可以逐行读取像素，不必持有整张图的int[]
+     */
+    public static long hashRow(int[] pixels, int offset, int width) {
+        long hash = 1;
+        for (int x = 0; x < width; x++) {
+            hash = hash * HASH_MULTIPLIER + (pixels[offset + x] & QUANTIZE_MASK);
+        }
+        return hash;
+    }
+
+    /**
+     * 检测两张等宽图片之间的重叠
+     */
+    public Result detect(int[] firstPixels, int firstHeight, int[] secondPixels, int secondHeight, int width) {
+        return detect(Rows.of(firstPixels, width, firstHeight), Rows.of(secondPixels, width, secondHeight));
+    }
+
+    /**
+     * 先按行哈希精确匹配，找不到重叠时再按亮度容差匹配
+     */
+    public Result detect(Rows first, Rows second) {
+        if (first.width != second.width) {
+            throw new IllegalArgumentException("只能比较等宽的图片");
+        }
+        Result result = detect(first.hashes, second.hashes);
+        if (result.hasOverlap()) {
+            return result;
+        }
+        return detectSimilar(first, second);
+    }
+
+    /**
+     * 基于行哈希检测重叠
+     */
+    public Result detect(long[] first, long[] second) {
+        int minHeight = Math.min(first.length, second.length);
+
+        // 顶部相同的行：固定的状态栏/标题栏
+        int header = 0;
+        while (header < minHeight && first[header] == second[header]) {
+            header++;
+        }
+        if (header == minHeight) {
+            // 整张图都相同（或一张是另一张的顶部），不是滚动截图
+            return new Result(0, 0, 0);
+        }
+
+        // 底部相同的行：固定的导航栏（不与header重叠）
+        int footer = 0;
+        while (footer < minHeight - header
+                && first[first.length - 1 - footer] == second[second.length - 1 - footer]) {
+            footer++;
+        }
+
+        int firstStart = header;
+        int firstEnd = first.length - footer;
+        int secondStart = header;
+        int secondEnd = second.length - footer;
+
+        int overlap = longestSuffixPrefix(first, firstStart, firstEnd, second, secondStart, secondEnd);
+        if (overlap < minOverlapRows) {
+            return new Result(header, footer, 0);
+        }
+        return new Result(header, footer, overlap);
+    }
+
+    /**
+     * KMP：first[firstStart, firstEnd) 的最长后缀，同时也是 second[secondStart, secondEnd) 的前缀
+     */
+    static int longestSuffixPrefix(long[] first, int firstStart, int firstEnd,
+                                   long[] second, int secondStart, int secondEnd) {
+        int patternLength = secondEnd - secondStart;
+        if (patternLength <= 0 || firstEnd <= firstStart) return 0;
+
+        // second内容区的前缀函数
+        int[] failure = new int[patternLength];
+        for (int i = 1, k = 0; i < patternLength; i++) {
+            while (k > 0 && second[secondStart + i] != second[secondStart + k]) {
+                k = failure[k - 1];
+            }
+            if (second[secondStart + i] == second[secondStart + k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+
+        // 用second的前缀去扫描first，扫描结束时的匹配长度即为所求
+        int matched = 0;
+        for (int i = firstStart; i < firstEnd; i++) {
+            while (matched > 0 && (matched == patternLength || first[i] != second[secondStart + matched])) {
+                matched = failure[matched - 1];
+            }
+            if (first[i] == second[secondStart + matched]) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 与detect(long[], long[])相同的流程，行相等改为亮度采样在容差内
+     */
+    private Result detectSimilar(Rows first, Rows second) {
+        int firstHeight = first.getHeight();
+        int secondHeight = second.getHeight();
+        int minHeight = Math.min(firstHeight, secondHeight);
+
+        int header = 0;
+        while (header < minHeight && first.similar(header, second, header)) {
+            header++;
+        }
+        if (header == minHeight) {
+            return new Result(0, 0, 0);
+        }
+
+        int footer = 0;
+        while (footer < minHeight - header
+                && first.similar(firstHeight - 1 - footer, second, secondHeight - 1 - footer)) {
+            footer++;
+        }
+
+        int overlap = longestSimilarSuffixPrefix(first, header, firstHeight - footer,
+            second, header, secondHeight - footer);
+        return new Result(header, footer, overlap);
+    }
+
+    /**
+     * 从长到短逐个验证候选重叠长度，返回不少于minOverlapRows的最长者，没有则返回0
+     */
+    private int longestSimilarSuffixPrefix(Rows first, int firstStart, int firstEnd,
+                                           Rows second, int secondStart, int secondEnd) {
+        int maxLength = Math.min(firstEnd - firstStart, secondEnd - secondStart);
+        for (int length = maxLength; length >= minOverlapRows; length--) {
+            int offset = firstEnd - length;
+            // 先比首尾两行，大多数错位在这里就被排除
+            if (!first.similar(offset, second, secondStart)
+                    || !first.similar(firstEnd - 1, second, secondStart + length - 1)) {
+                continue;
+            }
+            int row = 1;
+            while (row < length - 1 && first.similar(offset + row, second, secondStart + row)) {
+                row++;
+            }
+            if (row >= length - 1) {
+                return length;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,269 @@
+package com.yoyofloatingclock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑的不可变布局 - 所有格子的行列跨度存放在一个int[]中，每个格子依次占4个数：
+ * rowStart, rowEnd, colStart, colEnd（end不含）
+ *
+ * 创建后不再修改，可以在多个线程间共享；bounds按(宽, 高, 间距)缓存为float[]，
+ * 每个格子依次占4个数：left, top, right, bottom。与GridCell之间的转换只在编辑器（Parcelable）路径上使用。
+ *
+ * 每行、每列可以有各自的权重（默认等分），如2:1的两列不再需要用3列网格表达；
+ * 权重在创建时转成归一化的前缀和（各轨道边缘在0~1中的位置），计算bounds时直接查表。
+ *
+ * 自动生成的布局（如两端对齐的行）可以另外带上按画布归一化的格子位置（0~1），
+ * 这时bounds按归一化位置计算，跨度只表示格子所在的行和行内序号。
+ */
+public final class PackedLayout {
+
+    private final int[] spans;
+    // 归一化的 left, top, right, bottom；普通网格布局为null
+    private final float[] fractions;
+    private final int rowCount;
+    private final int columnCount;
+    // 各轨道边缘的归一化位置（权重的前缀和），长度为行数+1、列数+1；首项为0，末项为1
+    private final float[] rowEdges;
+    private final float[] columnEdges;
+    // 是否设置过非等分的权重
+    private final boolean weighted;
+
+    /**
+     * @param spans 每个格子4个数：rowStart, rowEnd, colStart, colEnd；会被复制
+     */
+    public PackedLayout(int[] spans) {
+        this(spans, null, null, null);
+    }
+
+    private PackedLayout(int[] spans, float[] fractions, float[] rowWeights, float[] columnWeights) {
+        if (spans.length % 4 != 0) {
+            throw new IllegalArgumentException("spans长度必须是4的倍数: " + spans.length);
+        }
+        this.spans = spans.clone();
+        int maxRow = 0, maxCol = 0;
+        for (int i = 0; i < spans.length; i += 4) {
+            if (spans[i] < 0 || spans[i + 1] <= spans[i] || spans[i + 2] < 0 || spans[i + 3] <= spans[i + 2]) {
+                throw new IllegalArgumentException("无效的格子跨度: " + (i / 4));
+            }
+            maxRow = Math.max(maxRow, spans[i + 1]);
+            maxCol = Math.max(maxCol, spans[i + 3]);
+        }
+        this.rowCount = maxRow;
+        this.columnCount = maxCol;
+        this.fractions = fractions;
+        this.rowEdges = edges(rowWeights, maxRow);
+        this.columnEdges = edges(columnWeights, maxCol);
+        this.weighted = rowWeights != null || columnWeights != null;
+    }
+
+    /**
+     * 权重的归一化前缀和；weights为null时等分
+     */
+    private static float[] edges(float[] weights, int count) {
+        if (weights != null && weights.length != count) {
+            throw new IllegalArgumentException("权重数量与轨道数不一致: " + weights.length + " != " + count);
+        }
+        float[] edges = new float[count + 1];
+        if (count == 0) return edges;
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            double weight = weights != null ? weights[i] : 1;
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("无效的轨道权重: " + weight);
+            }
+            total += weight;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            edges[i] = (float) (sum / total);
+            sum += weights != null ? weights[i] : 1;
+        }
+        edges[count] = 1f;
+        return edges;
+    }
+
+    /**
+     * 按归一化位置创建布局
+     *
+     * @param spans     每个格子所在的行与行内序号（rowStart, rowEnd, colStart, colEnd）
+     * @param fractions 每个格子4个数：left, top, right, bottom，取值0~1；会被复制
+     */
+    public static PackedLayout fromFractions(int[] spans, float[] fractions) {
+        if (fractions.length != spans.length) {
+            throw new IllegalArgumentException("fractions与spans长度不一致: " + fractions.length);
+        }
+        for (int i = 0; i < fractions.length; i += 4) {
+            if (fractions[i] < 0 || fractions[i + 2] > 1 || fractions[i + 2] <= fractions[i]
+                    || fractions[i + 1] < 0 || fractions[i + 3] > 1 || fractions[i + 3] <= fractions[i + 1]) {
+                throw new IllegalArgumentException("无效的格子位置: " + (i / 4));
+            }
+        }
+        return new PackedLayout(spans, fractions.clone(), null, null);
+    }
+
+    /**
+     * 相同格子、不同行列权重的新布局
+     *
+     * @param rowWeights    每行的权重（正数，只看比例），null表示等分
+     * @param columnWeights 每列的权重，null表示等分
+     */
+    public PackedLayout withTrackWeights(float[] rowWeights, float[] columnWeights) {
+        if (fractions != null) {
+            throw new IllegalStateException("按归一化位置排布的布局没有行列轨道");
+        }
+        return new PackedLayout(this, rowWeights, columnWeights);
+    }
+
+    /**
+     * 与source共享格子跨度（已校验过，不再复制），只重新计算轨道边缘：O(行数 + 列数)
+     */
+    private PackedLayout(PackedLayout source, float[] rowWeights, float[] columnWeights) {
+        this.spans = source.spans;
+        this.fractions = null;
+        this.rowCount = source.rowCount;
+        this.columnCount = source.columnCount;
+        this.rowEdges = edges(rowWeights, rowCount);
+        this.columnEdges = edges(columnWeights, columnCount);
+        this.weighted = rowWeights != null || columnWeights != null;
+    }
+
+    public static PackedLayout fromCells(List<GridCell> cells) {
+        int[] spans = new int[cells.size() * 4];
+        for (int i = 0; i < cells.size(); i++) {
+            GridCell cell = cells.get(i);
+            spans[i * 4] = cell.getRowStart();
+            spans[i * 4 + 1] = cell.getRowEnd();
+            spans[i * 4 + 2] = cell.getColStart();
+            spans[i * 4 + 3] = cell.getColEnd();
+        }
+        return new PackedLayout(spans);
+    }
+
+    /**
+     * 转换为新的GridCell列表（每次都是新对象，修改不会影响本布局）
+     *
+     * 按归一化位置排布的布局只能保留跨度（行与行内序号），格子的实际大小会丢失
+     */
+    public List<GridCell> toCells() {
+        List<GridCell> cells = new ArrayList<>(getCellCount());
+        for (int i = 0; i < spans.length; i += 4) {
+            cells.add(new GridCell(spans[i], spans[i + 1], spans[i + 2], spans[i + 3]));
+        }
+        return cells;
+    }
+
+    public int getCellCount() {
+        return spans.length / 4;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * 是否设置了非等分的行列权重
+     */
+    public boolean hasTrackWeights() {
+        return weighted;
+    }
+
+    /**
+     * 第i条行边缘的归一化位置（0为顶边，行数为底边）
+     */
+    public float getRowEdge(int i) {
+        return rowEdges[i];
+    }
+
+    /**
+     * 第i条列边缘的归一化位置（0为左边，列数为右边）
+     */
+    public float getColumnEdge(int i) {
+        return columnEdges[i];
+    }
+
+    /**
+     * 当前各行的权重（归一化，和为1）
+     */
+    public float[] getRowWeights() {
+        return weights(rowEdges);
+    }
+
+    /**
+     * 当前各列的权重（归一化，和为1）
+     */
+    public float[] getColumnWeights() {
+        return weights(columnEdges);
+    }
+
+    private static float[] weights(float[] edges) {
+        float[] weights = new float[edges.length - 1];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = edges[i + 1] - edges[i];
+        }
+        return weights;
+    }
+
+    /**
+     * 是否按归一化位置排布（格子不对齐到统一的行列网格）
+     */
+    public boolean isFractional() {
+        return fractions != null;
+    }
+
+    public int getRowStart(int cell) { return spans[cell * 4]; }
+    public int getRowEnd(int cell) { return spans[cell * 4 + 1]; }
+    public int getColStart(int cell) { return spans[cell * 4 + 2]; }
+    public int getColEnd(int cell) { return spans[cell * 4 + 3]; }
+
+    /**
+     * 内部的跨度数组，仅供同包内只读使用
+     */
+    int[] spans() {
+        return spans;
+    }
+
+    /**
+     * 指定画布尺寸和间距下所有格子的bounds，每次返回新数组，调用方可以随意修改
+     *
+     * 布局被多个视图共享，需要逐帧读取的调用方用computeBounds写入自己的缓冲
+     */
+    public float[] getBounds(int canvasWidth, int canvasHeight, int spacing) {
+        float[] values = new float[spans.length];
+        computeBounds(canvasWidth, canvasHeight, spacing, values);
+        return values;
+    }
+
+    /**
+     * 把bounds写入调用方提供的数组（长度至少为格子数×4），不分配对象
+     */
+    public void computeBounds(int canvasWidth, int canvasHeight, int spacing, float[] out) {
+        if (spans.length == 0) return;
+
+        // 轨道按权重分配 (W - spacing)，每条轨道再减去一个间距：
+        // 位置e的左侧边缘在 spacing + e·(W - spacing)，右侧边缘在 e·(W - spacing)；等分时与等宽轨道 + 统一间距相同
+        float usableWidth = canvasWidth - spacing;
+        float usableHeight = canvasHeight - spacing;
+
+        if (fractions != null) {
+            for (int i = 0; i < fractions.length; i += 4) {
+                out[i] = spacing + fractions[i] * usableWidth;
+                out[i + 1] = spacing + fractions[i + 1] * usableHeight;
+                out[i + 2] = fractions[i + 2] * usableWidth;
+                out[i + 3] = fractions[i + 3] * usableHeight;
+            }
+            return;
+        }
+
+        for (int i = 0; i < spans.length; i += 4) {
+            out[i] = spacing + columnEdges[spans[i + 2]] * usableWidth;
+            out[i + 1] = spacing + rowEdges[spans[i]] * usableHeight;
+            out[i + 2] = columnEdges[spans[i + 3]] * usableWidth;
+            out[i + 3] = rowEdges[spans[i + 1]] * usableHeight;
+        }
+    }
+}
@@ -101,6 +101,8 @@ public class PuzzleActivity extends AppCompatActivity {
             MaterialCardView card = (MaterialCardView) itemView;
             TextView nameText = itemView.findViewById(R.id.template_name);
             nameText.setText(layout.getDisplayName());
+            // 旧版模板没有布局预览，显示灰色占位
+            itemView.findViewById(R.id.layout_preview).setBackgroundColor(0xFF888888);
             
             // 设置选中状态
             if (layout == currentLayout) {
@@ -156,10 +158,12 @@ public class PuzzleActivity extends AppCompatActivity {
         
         for (int i = 0; i < imageCount; i++) {
             final int index = i;
+            // 按格子尺寸乘以放大余量解码，而不是固定尺寸
+            int[] size = puzzleView.getCellDecodeSize(index, PuzzleImageCell.DECODE_HEADROOM);
             Glide.with(this)
                 .asBitmap()
                 .load(selectedImageUris.get(i))
-                .override(1000, 1000)  // 限制图片大小
+                .override(size[0], size[1])
                 .into(new com.bumptech.glide.request.target.CustomTarget<Bitmap>() {
                     @Override
                     public void onResourceReady(Bitmap bitmap, com.bumptech.glide.request.transition.Transition<? super Bitmap> transition) {
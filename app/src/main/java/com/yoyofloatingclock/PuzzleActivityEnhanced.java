@@ -15,7 +15,6 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button;
 import android.widget.FrameLayout;
-import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.SeekBar;
 import android.widget.TextView;
@@ -25,31 +24,63 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.PickVisualMediaRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButtonToggleGroup;
-import com.google.android.material.card.MaterialCardView;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 完全增强的照片拼图Activity - 支持先选布局，点击格子添加图片
  */
 public class PuzzleActivityEnhanced extends AppCompatActivity {
 
+    // 画布尚未布局、无法按格子计算尺寸时的解码尺寸
+    private static final int FALLBACK_DECODE_SIZE = 1500;
+    // 在BitmapStore中统计内存时使用的持有方名称
+    private static final String OWNER_GRID = "PuzzleGrid";
+    private static final String OWNER_STITCH = "PuzzleStitch";
+
     private MaterialButtonToggleGroup modeToggleGroup;
-    private LinearLayout variantsContainer;
+    private RecyclerView variantsContainer;
+    private LayoutVariantAdapter variantAdapter;
     private ScrollView variantsScrollContainer;
     private FrameLayout canvasContainer;
     private PuzzleViewEnhanced puzzleView;
     private StitchingView stitchingView;
     private TextView tvHint;
     
-    private List<Bitmap> loadedBitmaps = new ArrayList<>();
+    // 拼接模式：原图Uri（导出时逐张解码全尺寸）与对应的预览缩略图，两者一一对应
+    // 每张缩略图在BitmapStore中持有一次引用，移除时归还
+    private final List<Uri> stitchUris = new ArrayList<>();
+    private final List<Bitmap> loadedBitmaps = new ArrayList<>();
+    
+    private BitmapStore bitmapStore;
+    private LayoutThumbnailCache thumbnailCache;
+    private LayoutLibrary layoutLibrary;
+    private int thumbnailSize;
+    // 预览用的位图格式（HARDWARE或RGB_565），导出时另行按ARGB_8888解码或转换
+    private final Bitmap.Config previewConfig = BitmapDecodeHelper.previewConfig();
+    // 宫格与拼接各用一个批量加载器：load()会取消同一加载器上的上一批，
+    // 分开后切换模式开始另一种导入时，不会丢掉另一种仍未交付的图片
+    private BatchImageLoader batchLoader;
+    private BatchImageLoader stitchLoader;
+    // 正在重新解码高分辨率版本的图片
+    private final Set<Uri> upgradingUris = new HashSet<>();
+    private ExecutorService exportExecutor;
+    // 布局库的读写单独一个线程，不会排在耗时的导出后面
+    private ExecutorService libraryExecutor;
+    // 批量导入时读取宽高比并求解布局，不等待导出
+    private ExecutorService solveExecutor;
     
     private PuzzleLayoutEnhanced.PuzzleMode currentMode = PuzzleLayoutEnhanced.PuzzleMode.GRID;
     private PuzzleLayoutEnhanced.LayoutVariant currentVariant = null;
@@ -58,6 +89,7 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
     private int spacing = 10;
     private int borderWidth = 0;
     private int currentCellIndex = -1;  // 当前点击的格子索引
+    private boolean trimStitchOverlaps = false;  // 竖拼导出时去除长截图重叠
     
     // 画布比例设置
     private float canvasAspectRatio = 0f;  // 0表示自由比例
@@ -91,6 +123,8 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
         
         modeToggleGroup = findViewById(R.id.mode_toggle_group);
         variantsContainer = findViewById(R.id.variants_container);
+        variantsContainer.setLayoutManager(
+            new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false));
         variantsScrollContainer = findViewById(R.id.variants_scroll_container);
         canvasContainer = findViewById(R.id.canvas_container);
         tvHint = findViewById(R.id.tv_hint);
@@ -98,6 +132,16 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
         puzzleView = new PuzzleViewEnhanced(this);
         stitchingView = new StitchingView(this);
         
+        bitmapStore = BitmapStore.get(this);
+        thumbnailCache = LayoutThumbnailCache.get(this);
+        layoutLibrary = LayoutLibrary.get(this);
+        thumbnailSize = getResources().getDimensionPixelSize(R.dimen.layout_thumbnail_size);
+        batchLoader = new BatchImageLoader(this);
+        stitchLoader = new BatchImageLoader(this);
+        exportExecutor = Executors.newSingleThreadExecutor();
+        libraryExecutor = Executors.newSingleThreadExecutor();
+        solveExecutor = Executors.newSingleThreadExecutor();
+        
         canvasContainer.addView(puzzleView);
     }
     
@@ -127,17 +171,56 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                    ArrayList<GridCell> cells = result.getData().getParcelableArrayListExtra("grid_cells");
-                    if (cells != null && !cells.isEmpty()) {
-                        // 直接应用自定义布局的GridCells
-                        puzzleView.setLayoutFromCells(cells);
-                        Toast.makeText(this, String.format("已应用自定义布局（%d格）", cells.size()), Toast.LENGTH_SHORT).show();
-                    }
+                    applyEditorResult(result.getData());
                 }
             }
         );
     }
     
+    /**
+     * 应用布局编辑器返回的布局：按令牌从LayoutRegistry取回；令牌失效（进程被回收）时
+     * 在后台从布局库读取，保存失败的布局则用结果里的跨度数组重建
+     */
+    private void applyEditorResult(Intent data) {
+        PackedLayout registered = LayoutRegistry.take(data.getLongExtra(LayoutEditorActivity.EXTRA_LAYOUT_TOKEN, 0));
+        PackedLayout received = registered != null
+            ? registered : fromSpans(data.getIntArrayExtra(LayoutEditorActivity.EXTRA_LAYOUT_SPANS));
+        long savedId = data.getLongExtra(LayoutEditorActivity.EXTRA_LAYOUT_ID, -1);
+        libraryExecutor.execute(() -> {
+            PackedLayout layout = received == null && savedId >= 0 ? layoutLibrary.load(savedId) : received;
+            // 编辑器已把布局存进库里（同一进程时列表已在内存中）
+            List<LayoutLibrary.Entry> saved = layoutLibrary.list();
+            runOnUiThread(() -> {
+                if (isDestroyed() || layout == null || layout.getCellCount() == 0) return;
+                showEditorLayout(layout, savedId, saved);
+            });
+        });
+    }
+    
+    private static PackedLayout fromSpans(int[] spans) {
+        if (spans == null) return null;
+        try {
+            return new PackedLayout(spans);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private void showEditorLayout(PackedLayout layout, long savedId, List<LayoutLibrary.Entry> saved) {
+        puzzleView.setLayout(layout);
+        currentVariant = null;
+        if (variantAdapter != null) {
+            variantAdapter.setSavedLayouts(saved);
+            if (savedId >= 0) {
+                variantAdapter.setSelectedSavedLayout(savedId);
+            } else {
+                variantAdapter.setSelectedVariant(null);
+            }
+        }
+        updateHint();
+        Toast.makeText(this, String.format("已应用自定义布局（%d格）", layout.getCellCount()), Toast.LENGTH_SHORT).show();
+    }
+    
     private void setupPuzzleView() {
         // 设置格子点击监听
         puzzleView.setOnCellClickListener(cellIndex -> {
@@ -147,6 +230,9 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
                 .setMediaType(ActivityResultContracts.PickVisualMedia.ImageOnly.INSTANCE)
                 .build());
         });
+        
+        // 放大超过解码余量时，按最大缩放倍数重新解码该格子
+        puzzleView.setOnCellResolutionListener(this::loadHigherResolutionForCell);
     }
     
     private void setupModeToggle() {
@@ -173,7 +259,7 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
             variantsScrollContainer.setVisibility(View.VISIBLE);
             showAllLayoutVariants();
         } else {
-            // 根据拼接方向使用不同的ScrollView
+            // 根据拼接方向设置滚动方向
             currentStitchMode = (mode == PuzzleLayoutEnhanced.PuzzleMode.STITCH_H) ? 
                 StitchMode.HORIZONTAL : StitchMode.VERTICAL;
             stitchingView.setStitchMode(currentStitchMode);
@@ -192,29 +278,24 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
                 @Override
                 public void onDelete(int position) {
                     if (position >= 0 && position < loadedBitmaps.size()) {
-                        loadedBitmaps.remove(position);
-                        stitchingView.setImages(loadedBitmaps);
+                        Bitmap removed = loadedBitmaps.remove(position);
+                        stitchUris.remove(position);
+                        stitchingView.removeImage(position);
+                        bitmapStore.release(removed);
                         Toast.makeText(PuzzleActivityEnhanced.this, "已删除图片", Toast.LENGTH_SHORT).show();
                     }
                 }
             });
             
-            // 包裹在ScrollView中
-            if (currentStitchMode == StitchMode.HORIZONTAL) {
-                // 横拼 - 横向滚动
-                android.widget.HorizontalScrollView scrollView = new android.widget.HorizontalScrollView(this);
-                scrollView.addView(stitchingView);
-                canvasContainer.addView(scrollView);
-            } else {
-                // 竖拼 - 纵向滚动
-                ScrollView scrollView = new ScrollView(this);
-                scrollView.addView(stitchingView);
-                canvasContainer.addView(scrollView);
-            }
+            // StitchingView自身可滚动（横拼横向、竖拼纵向），无需再包裹ScrollView
+            canvasContainer.addView(stitchingView);
             
             variantsScrollContainer.setVisibility(View.GONE);
             
-            if (!loadedBitmaps.isEmpty()) {
+            if (loadedBitmaps.size() != stitchUris.size()) {
+                // 从宫格模式切换过来时还没有缩略图
+                loadStitchThumbnails();
+            } else if (!loadedBitmaps.isEmpty()) {
                 stitchingView.setImages(loadedBitmaps);
             }
         }
@@ -223,127 +304,91 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
     }
     
     /**
-     * 显示所有可用的布局变体（按图片数量分组）
+     * 显示所有可用的布局变体（按图片数量分组），列表只创建一次，卡片按需创建
      */
     private void showAllLayoutVariants() {
-        variantsContainer.removeAllViews();
+        if (variantAdapter != null) return;
         
-        // 显示2-9张图片的所有布局，按数量分组
-        for (int count = 2; count <= 9; count++) {
-            List<PuzzleLayoutEnhanced.LayoutVariant> variants = 
-                PuzzleLayoutEnhanced.getVariantsForCount(count);
+        variantAdapter = new LayoutVariantAdapter(thumbnailCache, layoutLibrary, thumbnailSize,
+            getColor(R.color.color_accent), variant -> {
+                currentVariant = variant;
+                applyLayout(variant);
+            });
+        variantAdapter.setSelectedVariant(currentVariant);
+        variantAdapter.setOnSavedLayoutListener(new LayoutVariantAdapter.OnSavedLayoutListener() {
+            @Override
+            public void onSavedLayoutClick(LayoutLibrary.Entry entry) {
+                applySavedLayout(entry);
+            }
             
-            if (!variants.isEmpty()) {
-                // 添加分组标题
-                addGroupHeader(count, variants.size());
-                
-                // 添加该组的所有布局
-                for (final PuzzleLayoutEnhanced.LayoutVariant variant : variants) {
-                    addLayoutVariantCard(variant);
-                }
-                
-                // 添加分组间隔
-                if (count < 9) {
-                    addGroupSpacer();
-                }
+            @Override
+            public void onSavedLayoutLongClick(LayoutLibrary.Entry entry) {
+                confirmDeleteSavedLayout(entry);
             }
-        }
-    }
-    
-    /**
-     * 添加分组标题
-     */
-    private void addGroupHeader(int photoCount, int variantCount) {
-        LinearLayout headerLayout = new LinearLayout(this);
-        headerLayout.setOrientation(LinearLayout.VERTICAL);
-        headerLayout.setPadding(0, 0, 0, 8);
-        
-        TextView headerText = new TextView(this);
-        headerText.setText(String.format("%d张图片", photoCount));
-        headerText.setTextSize(16);
-        headerText.setTypeface(null, android.graphics.Typeface.BOLD);
-        headerText.setTextColor(getColor(R.color.color_text_primary));
-        
-        TextView countText = new TextView(this);
-        countText.setText(String.format("%d种布局", variantCount));
-        countText.setTextSize(12);
-        countText.setTextColor(getColor(R.color.color_text_secondary));
-        
-        headerLayout.addView(headerText);
-        headerLayout.addView(countText);
-        
-        variantsContainer.addView(headerLayout);
+        });
+        variantsContainer.setAdapter(variantAdapter);
+        
+        // 首次读取索引在后台进行，读完后再插入"我的布局"分组
+        libraryExecutor.execute(() -> {
+            List<LayoutLibrary.Entry> saved = layoutLibrary.list();
+            runOnUiThread(() -> {
+                if (isDestroyed() || saved.isEmpty()) return;
+                variantAdapter.setSavedLayouts(saved);
+            });
+        });
     }
     
     /**
-     * 添加布局变体卡片
+     * 应用保存的自定义布局，格子数据在后台读取
      */
-    private void addLayoutVariantCard(PuzzleLayoutEnhanced.LayoutVariant variant) {
-        View itemView = LayoutInflater.from(this)
-            .inflate(R.layout.layout_template_item, variantsContainer, false);
-        
-        MaterialCardView card = (MaterialCardView) itemView;
-        TextView nameText = itemView.findViewById(R.id.template_name);
-        LayoutPreviewView previewView = itemView.findViewById(R.id.layout_preview);
-        
-        nameText.setText(variant.getDisplayName());
-        previewView.setGridCells(variant.getGridCells());
-        
-        if (variant == currentVariant) {
-            card.setStrokeColor(getColor(R.color.color_accent));
-            card.setStrokeWidth(4);
-        } else {
-            card.setStrokeColor(Color.TRANSPARENT);
-            card.setStrokeWidth(2);
-        }
-        
-        card.setOnClickListener(v -> {
-            currentVariant = variant;
-            applyLayout(variant);
-            refreshVariantSelection();
+    private void applySavedLayout(LayoutLibrary.Entry entry) {
+        libraryExecutor.execute(() -> {
+            PackedLayout layout = layoutLibrary.load(entry.id);
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                if (layout == null) {
+                    Toast.makeText(this, "布局文件已损坏", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                currentVariant = null;
+                puzzleView.setLayout(layout);
+                variantAdapter.setSelectedSavedLayout(entry.id);
+                updateHint();
+            });
         });
-        
-        variantsContainer.addView(itemView);
     }
     
-    /**
-     * 添加分组间隔
-     */
-    private void addGroupSpacer() {
-        View spacer = new View(this);
-        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-            8, LinearLayout.LayoutParams.MATCH_PARENT);
-        spacer.setLayoutParams(params);
-        spacer.setBackgroundColor(0x00000000);  // 透明
-        variantsContainer.addView(spacer);
+    private void confirmDeleteSavedLayout(LayoutLibrary.Entry entry) {
+        new AlertDialog.Builder(this)
+            .setTitle("删除布局")
+            .setMessage(String.format("删除“%s”？", entry.name))
+            .setPositiveButton("删除", (dialog, which) -> libraryExecutor.execute(() -> {
+                boolean failed = false;
+                try {
+                    layoutLibrary.delete(entry.id);
+                } catch (IOException e) {
+                    failed = true;
+                }
+                boolean deleteFailed = failed;
+                List<LayoutLibrary.Entry> saved = layoutLibrary.list();
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    if (deleteFailed) {
+                        Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
+                    }
+                    variantAdapter.setSavedLayouts(saved);
+                });
+            }))
+            .setNegativeButton("取消", null)
+            .show();
     }
     
     private void applyLayout(PuzzleLayoutEnhanced.LayoutVariant variant) {
         puzzleView.setLayoutVariant(variant);
-        refreshVariantSelection();
+        variantAdapter.setSelectedVariant(currentVariant);
         updateHint();
     }
     
-    private void refreshVariantSelection() {
-        for (int i = 0; i < variantsContainer.getChildCount(); i++) {
-            View child = variantsContainer.getChildAt(i);
-            if (child instanceof MaterialCardView) {
-                MaterialCardView card = (MaterialCardView) child;
-                LayoutPreviewView previewView = child.findViewById(R.id.layout_preview);
-                TextView nameText = child.findViewById(R.id.template_name);
-                
-                if (nameText != null && currentVariant != null && 
-                    nameText.getText().toString().equals(currentVariant.getDisplayName())) {
-                    card.setStrokeColor(getColor(R.color.color_accent));
-                    card.setStrokeWidth(4);
-                } else {
-                    card.setStrokeColor(Color.TRANSPARENT);
-                    card.setStrokeWidth(2);
-                }
-            }
-        }
-    }
-    
     private void setupButtons() {
         Button btnSelectPhotos = findViewById(R.id.btn_select_photos);
         btnSelectPhotos.setText("批量添加");
@@ -371,76 +416,257 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
     }
     
     /**
-     * 为单个格子加载图片
+     * 为单个格子加载图片（拼接模式下为插入位置）
      */
     private void loadSingleImageForCell(Uri uri, int cellIndex) {
-        Glide.with(this)
-            .asBitmap()
-            .load(uri)
-            .override(1500, 1500)
-            .into(new com.bumptech.glide.request.target.CustomTarget<Bitmap>() {
+        if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
+            loadImageForGridCell(uri, cellIndex);
+            return;
+        }
+        
+        // 拼接模式 - 只加载缩略图，在指定位置插入，只增量插入一项
+        loadThumbnail(uri, bitmap -> {
+            if (bitmap == null) return;
+            int position = Math.max(0, Math.min(cellIndex, loadedBitmaps.size()));
+            stitchUris.add(position, uri);
+            loadedBitmaps.add(position, bitmap);
+            stitchingView.insertImage(position, bitmap);
+            updateHint();
+        });
+    }
+    
+    private void loadImageForGridCell(Uri uri, int cellIndex) {
+        int[] size = getGridDecodeSize(cellIndex, PuzzleImageCell.DECODE_HEADROOM);
+        bitmapStore.acquireAsync(uri, size[0], size[1], previewConfig, OWNER_GRID, bitmap -> {
+            if (bitmap == null) return;
+            if (isDestroyed()) {
+                bitmapStore.release(bitmap);
+                return;
+            }
+            puzzleView.setImageForCell(cellIndex, bitmap, uri);
+            updateHint();
+        });
+    }
+    
+    /**
+     * 加载拼接预览用的缩略图（短边为预览尺寸），BitmapStore中已有时不会重复解码
+     */
+    private void loadThumbnail(Uri uri, BitmapStore.AcquireCallback callback) {
+        bitmapStore.acquireAsync(uri, StitchingView.PREVIEW_SIZE, StitchingView.PREVIEW_SIZE,
+            previewConfig, OWNER_STITCH, bitmap -> {
+                if (bitmap != null && isDestroyed()) {
+                    bitmapStore.release(bitmap);
+                    return;
+                }
+                callback.onAcquired(bitmap);
+            });
+    }
+    
+    /**
+     * 归还所有缩略图的引用
+     */
+    private void releaseStitchThumbnails() {
+        for (Bitmap bitmap : loadedBitmaps) {
+            bitmapStore.release(bitmap);
+        }
+        loadedBitmaps.clear();
+    }
+    
+    /**
+     * 批量加载图片
+     */
+    private void loadMultipleImages(List<Uri> uris) {
+        stitchUris.clear();
+        stitchUris.addAll(uris);
+        releaseStitchThumbnails();
+        
+        if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
+            if (puzzleView.getCellCount() == 0 && uris.size() >= 2) {
+                // 还没有选布局：按图片的宽高比自动选择裁切最少的布局和摆放顺序，图片较多时排成两端对齐的行
+                autoLayoutAndLoad(uris);
+            } else {
+                loadGridImages(uris);
+            }
+        } else {
+            loadStitchThumbnails();
+        }
+    }
+    
+    /**
+     * 宫格模式：按顺序填满现有格子
+     */
+    private void loadGridImages(List<Uri> uris) {
+        // 宫格模式只需要填满现有格子，缩略图等切换到拼接模式时再加载
+        int count = Math.min(uris.size(), puzzleView.getCellCount());
+        // 在主线程按格子尺寸算好解码尺寸，解码线程只读
+        final int[][] decodeSizes = new int[count][];
+        for (int i = 0; i < count; i++) {
+            decodeSizes[i] = getGridDecodeSize(i, PuzzleImageCell.DECODE_HEADROOM);
+        }
+        batchLoader.load(uris.subList(0, count),
+            (index, uri) -> decodeForGridCell(uri, decodeSizes[index]),
+            new BatchImageLoader.Callback() {
                 @Override
-                public void onResourceReady(Bitmap bitmap, com.bumptech.glide.request.transition.Transition<? super Bitmap> transition) {
-                    if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
-                        puzzleView.setImageForCell(cellIndex, bitmap);
-                    } else {
-                        // 拼接模式 - 在指定位置插入图片
-                        loadedBitmaps.add(cellIndex, bitmap);
-                        stitchingView.setImages(loadedBitmaps);
-                    }
+                public void onImageLoaded(int index, Uri uri, Bitmap bitmap) {
+                    // 前面的格子先填上，后面的继续解码
+                    puzzleView.setImageForCell(index, bitmap, uri);
                     updateHint();
                 }
                 
                 @Override
-                public void onLoadCleared(android.graphics.drawable.Drawable placeholder) {
+                public void onImageFailed(int index, Uri uri) {
+                }
+                
+                @Override
+                public void onComplete(int loadedCount, int failedCount) {
+                    showLoadFailures(failedCount);
+                }
+                
+                @Override
+                public void onImageDiscarded(int index, Uri uri, Bitmap bitmap) {
+                    bitmapStore.release(bitmap);
                 }
             });
     }
     
     /**
-     * 批量加载图片
+     * 后台读取各图片的宽高比并求解布局，应用后按求得的顺序填入格子；
+     * 超过LayoutSolver能穷举的数量时改用两端对齐的行，保持原顺序
      */
-    private void loadMultipleImages(List<Uri> uris) {
-        loadedBitmaps.clear();
+    private void autoLayoutAndLoad(List<Uri> uris) {
+        final List<Uri> selected = new ArrayList<>(uris);
+        final float canvasAspect = canvasAspectRatio > 0 ? canvasAspectRatio
+            : puzzleView.getWidth() > 0 && puzzleView.getHeight() > 0
+                ? puzzleView.getWidth() / (float) puzzleView.getHeight() : 1f;
+        solveExecutor.execute(() -> {
+            float[] aspects = new float[selected.size()];
+            for (int i = 0; i < aspects.length; i++) {
+                try {
+                    BitmapDecodeHelper.ImageInfo info = BitmapDecodeHelper.readImageInfo(this, selected.get(i));
+                    aspects[i] = info.width / (float) info.height;
+                } catch (IOException e) {
+                    // 读不到尺寸的图片按方形处理，加载时再报告失败
+                    aspects[i] = 1f;
+                }
+            }
+            final LayoutSolver.Result result = aspects.length <= LayoutSolver.MAX_PHOTOS
+                ? LayoutSolver.solve(aspects, canvasAspect) : null;
+            final PackedLayout justified = result == null && aspects.length <= JustifiedRowsGenerator.MAX_PHOTOS
+                ? JustifiedRowsGenerator.generate(aspects, canvasAspect) : null;
+            
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                // 求解期间用户已经选了布局时，按原顺序填入
+                if (puzzleView.getCellCount() != 0 || (result == null && justified == null)) {
+                    loadGridImages(selected);
+                    return;
+                }
+                if (justified != null) {
+                    puzzleView.setLayout(justified);
+                    updateHint();
+                    loadGridImages(selected);
+                    return;
+                }
+                if (result.variant != null) {
+                    currentVariant = result.variant;
+                    applyLayout(result.variant);
+                } else {
+                    puzzleView.setLayout(result.layout);
+                    updateHint();
+                }
+                List<Uri> ordered = new ArrayList<>(selected.size());
+                for (int photo : result.photoForCell) {
+                    ordered.add(selected.get(photo));
+                }
+                loadGridImages(ordered);
+            });
+        });
+    }
+    
+    /**
+     * 为stitchUris中的所有图片加载缩略图，按原顺序逐张追加到预览
+     */
+    private void loadStitchThumbnails() {
+        final List<Uri> uris = new ArrayList<>(stitchUris);
+        stitchUris.clear();
+        stitchingView.clearImages();
+        releaseStitchThumbnails();
         
-        int totalImages = uris.size();
-        final int[] loadedCount = {0};
-        
-        for (Uri uri : uris) {
-            Glide.with(this)
-                .asBitmap()
-                .load(uri)
-                .override(1500, 1500)
-                .into(new com.bumptech.glide.request.target.CustomTarget<Bitmap>() {
-                    @Override
-                    public void onResourceReady(Bitmap bitmap, com.bumptech.glide.request.transition.Transition<? super Bitmap> transition) {
-                        loadedBitmaps.add(bitmap);
-                        loadedCount[0]++;
-                        
-                        if (loadedCount[0] == totalImages) {
-                            onAllImagesLoaded();
-                        }
-                    }
-                    
-                    @Override
-                    public void onLoadCleared(android.graphics.drawable.Drawable placeholder) {
-                    }
-                });
-        }
+        stitchLoader.load(uris, (index, uri) -> decodeThumbnail(uri), new BatchImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(int index, Uri uri, Bitmap bitmap) {
+                // 解码失败的图片被跳过，Uri和缩略图始终一一对应
+                stitchUris.add(uri);
+                loadedBitmaps.add(bitmap);
+                stitchingView.addImage(bitmap);
+                updateHint();
+            }
+            
+            @Override
+            public void onImageFailed(int index, Uri uri) {
+            }
+            
+            @Override
+            public void onComplete(int loadedCount, int failedCount) {
+                showLoadFailures(failedCount);
+            }
+            
+            @Override
+            public void onImageDiscarded(int index, Uri uri, Bitmap bitmap) {
+                bitmapStore.release(bitmap);
+            }
+        });
     }
     
-    private void onAllImagesLoaded() {
-        if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
-            puzzleView.setImages(loadedBitmaps);
-        } else {
-            stitchingView.setImages(loadedBitmaps);
+    /**
+     * 工作线程上解码宫格图片
+     */
+    private Bitmap decodeForGridCell(Uri uri, int[] size) throws Exception {
+        return bitmapStore.acquire(uri, size[0], size[1], previewConfig, OWNER_GRID);
+    }
+    
+    /**
+     * 格子需要的解码尺寸 = 格子尺寸 × 放大余量；画布尚未布局时退回固定尺寸
+     */
+    private int[] getGridDecodeSize(int cellIndex, float headroom) {
+        int[] size = puzzleView.getCellDecodeSize(cellIndex, headroom);
+        return size != null ? size : new int[] {FALLBACK_DECODE_SIZE, FALLBACK_DECODE_SIZE};
+    }
+    
+    /**
+     * 格子被放大到超过当前分辨率时，按最大缩放倍数重新解码后原位替换
+     */
+    private void loadHigherResolutionForCell(int cellIndex, Uri uri) {
+        if (uri == null || !upgradingUris.add(uri)) return;
+        
+        int[] size = getGridDecodeSize(cellIndex, PuzzleImageCell.MAX_ZOOM);
+        bitmapStore.acquireAsync(uri, size[0], size[1], previewConfig, OWNER_GRID, bitmap -> {
+            upgradingUris.remove(uri);
+            if (bitmap == null) return;
+            // 格子已换图或页面已退出时归还
+            if (isDestroyed() || !puzzleView.replaceCellBitmap(cellIndex, uri, bitmap)) {
+                bitmapStore.release(bitmap);
+            }
+        });
+    }
+    
+    /**
+     * 工作线程上解码拼接缩略图
+     */
+    private Bitmap decodeThumbnail(Uri uri) throws Exception {
+        return bitmapStore.acquire(uri, StitchingView.PREVIEW_SIZE, StitchingView.PREVIEW_SIZE,
+            previewConfig, OWNER_STITCH);
+    }
+    
+    private void showLoadFailures(int failedCount) {
+        if (failedCount > 0) {
+            Toast.makeText(this, String.format("%d张图片加载失败", failedCount), Toast.LENGTH_SHORT).show();
         }
-        updateHint();
     }
     
     private void updateHint() {
         if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
-            if (currentVariant == null) {
+            if (currentVariant == null && puzzleView.getCellCount() == 0) {
                 tvHint.setVisibility(View.VISIBLE);
                 tvHint.setText("请选择一个布局开始");
             } else if (puzzleView.getFilledCellCount() == 0) {
@@ -470,6 +696,8 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
         MaterialButtonToggleGroup aspectGroup1 = dialogView.findViewById(R.id.aspect_ratio_group);
         MaterialButtonToggleGroup aspectGroup2 = dialogView.findViewById(R.id.aspect_ratio_group2);
         android.widget.RadioGroup formatGroup = dialogView.findViewById(R.id.format_group);
+        android.widget.CheckBox checkTrimOverlap = dialogView.findViewById(R.id.check_trim_overlap);
+        checkTrimOverlap.setChecked(trimStitchOverlaps);
         
         seekSpacing.setProgress(spacing);
         seekBorder.setProgress(borderWidth);
@@ -504,6 +732,7 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
             .setPositiveButton("应用", (dialog, which) -> {
                 spacing = seekSpacing.getProgress();
                 borderWidth = seekBorder.getProgress();
+                trimStitchOverlaps = checkTrimOverlap.isChecked();
                 
                 // 应用画布比例
                 int checkedAspectId = aspectGroup1.getCheckedButtonId();
@@ -556,14 +785,13 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
             return;
         }
         
+        if (currentMode != PuzzleLayoutEnhanced.PuzzleMode.GRID) {
+            exportStitch();
+            return;
+        }
+        
         try {
-            Bitmap bitmap;
-            if (currentMode == PuzzleLayoutEnhanced.PuzzleMode.GRID) {
-                bitmap = puzzleView.exportBitmap();
-            } else {
-                bitmap = stitchingView.exportBitmap();
-            }
-            
+            Bitmap bitmap = puzzleView.exportBitmap();
             saveBitmapToGallery(bitmap);
             Toast.makeText(this, R.string.toast_puzzle_saved, Toast.LENGTH_SHORT).show();
         } catch (Exception e) {
@@ -572,6 +800,40 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
         }
     }
     
+    /**
+     * 拼接导出 - 在后台线程从原图逐张解码全尺寸像素
+     */
+    private void exportStitch() {
+        if (stitchUris.isEmpty()) {
+            Toast.makeText(this, "请先添加图片", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        final List<Uri> uris = new ArrayList<>(stitchUris);
+        final StitchMode mode = currentStitchMode;
+        final float spacingRatio = spacing / (float) StitchingView.PREVIEW_SIZE;
+        final StitchExporter exporter = new StitchExporter(this);
+        exporter.setTrimOverlaps(trimStitchOverlaps);
+        
+        exportExecutor.execute(() -> {
+            boolean success;
+            try {
+                Bitmap bitmap = exporter.export(uris, mode, spacingRatio, Color.WHITE);
+                saveBitmapToGallery(bitmap);
+                bitmap.recycle();
+                success = true;
+            } catch (Exception | OutOfMemoryError e) {
+                e.printStackTrace();
+                success = false;
+            }
+            
+            final boolean saved = success;
+            runOnUiThread(() -> Toast.makeText(this,
+                saved ? R.string.toast_puzzle_saved : R.string.toast_puzzle_save_failed,
+                Toast.LENGTH_SHORT).show());
+        });
+    }
+    
     private void saveBitmapToGallery(Bitmap bitmap) throws IOException {
         String displayName = "Puzzle_" + System.currentTimeMillis() + ".jpg";
         
@@ -596,4 +858,29 @@ public class PuzzleActivityEnhanced extends AppCompatActivity {
             );
         }
     }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (batchLoader != null) {
+            // 退出时取消仍在排队/解码中的批量导入
+            batchLoader.shutdown();
+            stitchLoader.shutdown();
+        }
+        if (exportExecutor != null) {
+            exportExecutor.shutdown();
+            libraryExecutor.shutdown();
+            solveExecutor.shutdown();
+        }
+        if (puzzleView != null) {
+            puzzleView.release();
+        }
+        releaseStitchThumbnails();
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        bitmapStore.trimMemory(level);
+    }
 }
@@ -5,14 +5,30 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.RectF;
+import android.net.Uri;
 
 /**
  * 拼图中的单个图片格子
  */
 public class PuzzleImageCell {
+    // 最大放大倍数（相对于刚好填满格子）
+    public static final float MAX_ZOOM = 3f;
+    // 首次解码预留的放大余量，放大超过该倍数后再按MAX_ZOOM重新解码
+    public static final float DECODE_HEADROOM = 1.5f;
+    // 单边解码上限，超过会超出GPU纹理限制
+    public static final int MAX_DECODE_SIZE = 4096;
+    // 图片像素被放大超过该比例时认为清晰度不够
+    private static final float UPSCALE_TOLERANCE = 1.1f;
+
     private RectF bounds;  // 格子的边界
     private Bitmap bitmap;  // 图片
+    private Uri sourceUri;  // 图片来源，用于按需重新解码更高分辨率
+    private boolean fullResolution = false;  // 已无法获得更高分辨率
     private Matrix matrix;  // 变换矩阵（用于缩放、平移）
+    // 分块绘制时复用的对象，避免每帧分配
+    private final Matrix inverseMatrix = new Matrix();
+    private final RectF visibleRect = new RectF();
+    private final RectF tileRect = new RectF();
     private float scale = 1.0f;  // 缩放比例
     private float offsetX = 0;  // X偏移
     private float offsetY = 0;  // Y偏移
@@ -23,11 +39,58 @@ public class PuzzleImageCell {
     }
 
     public void setBitmap(Bitmap bitmap) {
+        setBitmap(bitmap, null);
+    }
+
+    public void setBitmap(Bitmap bitmap, Uri sourceUri) {
+        // 格子持有一次引用，换图时归还旧图
+        if (this.bitmap != null) {
+            BitmapStore.releaseIfManaged(this.bitmap);
+        }
         this.bitmap = bitmap;
+        this.sourceUri = sourceUri;
+        this.fullResolution = false;
         // 初始化时让图片填充满格子
         resetTransform();
     }
 
+    /**
+     * 换成同一张图的另一分辨率版本，保持当前的缩放和平移
+     */
+    public void replaceBitmap(Bitmap higherResolution) {
+        if (bitmap == null || higherResolution == null) return;
+        float ratio = bitmap.getWidth() / (float) higherResolution.getWidth();
+        // 新图没有更多像素，说明已经是原图分辨率
+        fullResolution = ratio >= 1f;
+        BitmapStore.releaseIfManaged(bitmap);
+        bitmap = higherResolution;
+        scale *= ratio;
+        updateMatrix();
+    }
+
+    public Uri getSourceUri() {
+        return sourceUri;
+    }
+
+    /**
+     * 当前缩放下图片像素已被明显放大，且还有可能解码出更高分辨率
+     */
+    public boolean needsHigherResolution() {
+        return bitmap != null && sourceUri != null && !fullResolution && scale > UPSCALE_TOLERANCE;
+    }
+
+    /**
+     * 按格子尺寸乘以放大余量计算需要的解码尺寸
+     */
+    public static int[] computeDecodeSize(RectF bounds, float headroom) {
+        int width = (int) Math.ceil(bounds.width() * headroom);
+        int height = (int) Math.ceil(bounds.height() * headroom);
+        return new int[] {
+            Math.max(1, Math.min(width, MAX_DECODE_SIZE)),
+            Math.max(1, Math.min(height, MAX_DECODE_SIZE))
+        };
+    }
+
     public Bitmap getBitmap() {
         return bitmap;
     }
@@ -36,9 +99,46 @@ public class PuzzleImageCell {
         return bounds;
     }
 
+    /**
+     * 换到新的边界，保持当前的裁切窗口（见updateBounds），不重置缩放和平移
+     */
     public void setBounds(RectF bounds) {
-        this.bounds = bounds;
-        resetTransform();
+        updateBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+
+    /**
+     * 原地调整格子边界，把原来的裁切窗口映射到新边界：
+     * 窗口用归一化的图片坐标表示（格子中心对准的图片位置0~1 + 相对刚好填满时的放大倍数），
+     * 与格子的像素尺寸无关，所以改间距、拖动分隔线、换布局时用户调好的裁切都能保留
+     */
+    public void updateBounds(float left, float top, float right, float bottom) {
+        if (bitmap == null || bounds.isEmpty()) {
+            bounds.set(left, top, right, bottom);
+            resetTransform();
+            return;
+        }
+        
+        // 当前格子中心对应的图片位置（0~1）和相对刚好填满的放大倍数
+        float zoom = scale / fillScale();
+        float centerX = (bounds.width() / 2 - offsetX) / (scale * bitmap.getWidth());
+        float centerY = (bounds.height() / 2 - offsetY) / (scale * bitmap.getHeight());
+        
+        bounds.set(left, top, right, bottom);
+        scale = fillScale() * Math.max(1f, Math.min(zoom, MAX_ZOOM));
+        offsetX = bounds.width() / 2 - centerX * bitmap.getWidth() * scale;
+        offsetY = bounds.height() / 2 - centerY * bitmap.getHeight() * scale;
+        
+        // 格子变形后图片仍要覆盖整个格子
+        offsetX = Math.max(bounds.width() - bitmap.getWidth() * scale, Math.min(offsetX, 0));
+        offsetY = Math.max(bounds.height() - bitmap.getHeight() * scale, Math.min(offsetY, 0));
+        updateMatrix();
+    }
+    
+    /**
+     * 图片刚好覆盖整个格子时的缩放比例
+     */
+    private float fillScale() {
+        return Math.max(bounds.width() / bitmap.getWidth(), bounds.height() / bitmap.getHeight());
     }
 
     /**
@@ -98,7 +198,7 @@ public class PuzzleImageCell {
         float cellHeight = bounds.height();
         if (bitmap != null) {
             float minScale = Math.max(cellWidth / bitmap.getWidth(), cellHeight / bitmap.getHeight());
-            float maxScale = minScale * 3;
+            float maxScale = minScale * MAX_ZOOM;
             scale = Math.max(minScale, Math.min(scale, maxScale));
         }
         
@@ -114,13 +214,81 @@ public class PuzzleImageCell {
      * 绘制图片
      */
     public void draw(Canvas canvas, Paint paint) {
+        draw(canvas, paint, null);
+    }
+
+    /**
+     * 绘制图片，放大到整图分辨率不够时叠加原图分块
+     */
+    public void draw(Canvas canvas, Paint paint, RegionTileLoader tileLoader) {
         if (bitmap == null) return;
         
         canvas.save();
-        canvas.clipRect(bounds);  // 裁剪到格子范围内
-        canvas.drawBitmap(bitmap, matrix, paint);
+        canvas.clipRect(bounds);
+        if (!canvas.isHardwareAccelerated() && BitmapDecodeHelper.isHardware(bitmap)) {
+            // 导出时绘制到软件Canvas，HARDWARE位图需要临时转成软件位图
+            Bitmap software = BitmapDecodeHelper.toSoftware(bitmap);
+            if (software != null) {
+                canvas.drawBitmap(software, matrix, paint);
+                software.recycle();
+            }
+        } else {
+            canvas.drawBitmap(bitmap, matrix, paint);
+        }
+        if (tileLoader != null && sourceUri != null) {
+            drawTiles(canvas, paint, tileLoader);
+        }
         canvas.restore();
     }
+    
+    /**
+     * 在整图之上绘制可见区域的原图分块，缺失的块请求后台解码，期间仍显示整图
+     */
+    private void drawTiles(Canvas canvas, Paint paint, RegionTileLoader tileLoader) {
+        // 整图没有被放大时已经足够清晰，不去打开区域解码器（格子很多时每张图都会占一个）
+        if (scale <= UPSCALE_TOLERANCE) return;
+        int[] sourceSize = tileLoader.getSourceSize(sourceUri);
+        if (sourceSize == null) return;
+        
+        // 整图一个像素对应的原图像素数
+        float sourcePerBitmap = sourceSize[0] / (float) bitmap.getWidth();
+        // 屏幕上一个像素对应的原图像素数，取不超过它的2的幂作为采样级别
+        float sourcePerScreen = sourcePerBitmap / scale;
+        int level = 1;
+        while (level * 2 <= sourcePerScreen) {
+            level *= 2;
+        }
+        // 整图已经足够清晰
+        if (level * UPSCALE_TOLERANCE >= sourcePerBitmap) return;
+        
+        // 格子内可见的整图区域，换算到原图坐标
+        if (!matrix.invert(inverseMatrix)) return;
+        visibleRect.set(bounds);
+        inverseMatrix.mapRect(visibleRect);
+        if (!visibleRect.intersect(0, 0, bitmap.getWidth(), bitmap.getHeight())) return;
+        
+        int span = RegionTileLoader.TILE_SIZE * level;
+        int firstColumn = (int) (visibleRect.left * sourcePerBitmap / span);
+        int lastColumn = (int) (Math.min(visibleRect.right * sourcePerBitmap, sourceSize[0] - 1) / span);
+        int firstRow = (int) (visibleRect.top * sourcePerBitmap / span);
+        int lastRow = (int) (Math.min(visibleRect.bottom * sourcePerBitmap, sourceSize[1] - 1) / span);
+        
+        canvas.concat(matrix);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Bitmap tile = tileLoader.getTile(sourceUri, level, column, row);
+                if (tile == null) {
+                    tileLoader.requestTile(sourceUri, level, column, row);
+                    continue;
+                }
+                // 块在整图坐标系中的位置，由matrix映射到屏幕
+                tileRect.set(column * span / sourcePerBitmap, row * span / sourcePerBitmap,
+                    Math.min((column + 1) * span, sourceSize[0]) / sourcePerBitmap,
+                    Math.min((row + 1) * span, sourceSize[1]) / sourcePerBitmap);
+                canvas.drawBitmap(tile, null, tileRect, paint);
+            }
+        }
+    }
 
     /**
      * 判断点是否在此格子内
@@ -140,9 +308,9 @@ public class PuzzleImageCell {
      * 清除图片
      */
     public void clear() {
-        if (bitmap != null && !bitmap.isRecycled()) {
-            bitmap.recycle();
-        }
+        // 由BitmapStore统一决定何时淘汰，其它来源（如Glide）的位图由其自身管理，这里不recycle
+        BitmapStore.releaseIfManaged(bitmap);
         bitmap = null;
+        sourceUri = null;
     }
 }
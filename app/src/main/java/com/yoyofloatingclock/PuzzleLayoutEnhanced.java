@@ -25,10 +25,10 @@ public class PuzzleLayoutEnhanced {
         // === 2张图片布局 ===
         GRID_2_H("2张-横向", 2, createGrid2H()),
         GRID_2_V("2张-纵向", 2, createGrid2V()),
-        GRID_2_LEFT_LARGE("2张-左大", 2, createGrid2LeftLarge()),
-        GRID_2_RIGHT_LARGE("2张-右大", 2, createGrid2RightLarge()),
-        GRID_2_TOP_LARGE("2张-上大", 2, createGrid2TopLarge()),
-        GRID_2_BOTTOM_LARGE("2张-下大", 2, createGrid2BottomLarge()),
+        GRID_2_LEFT_LARGE("2张-左大", 2, createGrid2H(), null, new float[] {2, 1}),
+        GRID_2_RIGHT_LARGE("2张-右大", 2, createGrid2H(), null, new float[] {1, 2}),
+        GRID_2_TOP_LARGE("2张-上大", 2, createGrid2V(), new float[] {2, 1}, null),
+        GRID_2_BOTTOM_LARGE("2张-下大", 2, createGrid2V(), new float[] {1, 2}, null),
         
         // === 3张图片布局 ===
         GRID_3_VERTICAL("3张-三列", 3, createGrid3Vertical()),
@@ -91,17 +91,29 @@ public class PuzzleLayoutEnhanced {
         
         private final String displayName;
         private final int imageCount;
-        private final List<GridCell> gridCells;
+        private final PackedLayout layout;
         
         LayoutVariant(String displayName, int imageCount, List<GridCell> gridCells) {
+            this(displayName, imageCount, gridCells, null, null);
+        }
+        
+        /**
+         * 带行列权重的布局，如2:1的两列
+         */
+        LayoutVariant(String displayName, int imageCount, List<GridCell> gridCells,
+                      float[] rowWeights, float[] columnWeights) {
             this.displayName = displayName;
             this.imageCount = imageCount;
-            this.gridCells = gridCells;
+            PackedLayout cells = PackedLayout.fromCells(gridCells);
+            this.layout = rowWeights == null && columnWeights == null
+                ? cells : cells.withTrackWeights(rowWeights, columnWeights);
         }
         
         public String getDisplayName() { return displayName; }
         public int getImageCount() { return imageCount; }
-        public List<GridCell> getGridCells() { return gridCells; }
+        public PackedLayout getLayout() { return layout; }
+        // 每次返回新的GridCell，不会改动变体本身（行列权重不在GridCell中）
+        public List<GridCell> getGridCells() { return layout.toCells(); }
     }
     
     // ==================== 2张图片布局定义 ====================
@@ -120,34 +132,6 @@ public class PuzzleLayoutEnhanced {
         return cells;
     }
     
-    private static List<GridCell> createGrid2LeftLarge() {
-        List<GridCell> cells = new ArrayList<>();
-        cells.add(new GridCell(0, 2, 0, 2));  // 左大（占2列）
-        cells.add(new GridCell(0, 2, 2, 3));  // 右小
-        return cells;
-    }
-    
-    private static List<GridCell> createGrid2RightLarge() {
-        List<GridCell> cells = new ArrayList<>();
-        cells.add(new GridCell(0, 2, 0, 1));  // 左小
-        cells.add(new GridCell(0, 2, 1, 3));  // 右大
-        return cells;
-    }
-    
-    private static List<GridCell> createGrid2TopLarge() {
-        List<GridCell> cells = new ArrayList<>();
-        cells.add(new GridCell(0, 2, 0, 2));  // 上大
-        cells.add(new GridCell(2, 3, 0, 2));  // 下小
-        return cells;
-    }
-    
-    private static List<GridCell> createGrid2BottomLarge() {
-        List<GridCell> cells = new ArrayList<>();
-        cells.add(new GridCell(0, 1, 0, 2));  // 上小
-        cells.add(new GridCell(1, 3, 0, 2));  // 下大
-        return cells;
-    }
-    
     // ==================== 3张图片布局定义 ====================
     
     private static List<GridCell> createGrid3Vertical() {
@@ -633,30 +617,14 @@ public class PuzzleLayoutEnhanced {
      * 计算所有格子的实际bounds
      */
     public static List<RectF> calculateBounds(List<GridCell> gridCells, int canvasWidth, int canvasHeight, int spacing) {
-        if (gridCells.isEmpty()) return new ArrayList<>();
+        PackedLayout layout = PackedLayout.fromCells(gridCells);
+        float[] packed = new float[layout.getCellCount() * 4];
+        layout.computeBounds(canvasWidth, canvasHeight, spacing, packed);
         
-        // 找出最大行列数
-        int maxRow = 0, maxCol = 0;
-        for (GridCell cell : gridCells) {
-            maxRow = Math.max(maxRow, cell.getRowEnd());
-            maxCol = Math.max(maxCol, cell.getColEnd());
+        List<RectF> bounds = new ArrayList<>(layout.getCellCount());
+        for (int i = 0; i < packed.length; i += 4) {
+            bounds.add(new RectF(packed[i], packed[i + 1], packed[i + 2], packed[i + 3]));
         }
-        
-        // 计算每个单元格的大小
-        float cellWidth = (canvasWidth - spacing * (maxCol + 1)) / (float) maxCol;
-        float cellHeight = (canvasHeight - spacing * (maxRow + 1)) / (float) maxRow;
-        
-        // 计算每个GridCell的bounds
-        List<RectF> bounds = new ArrayList<>();
-        for (GridCell cell : gridCells) {
-            float left = spacing + cell.getColStart() * (cellWidth + spacing);
-            float top = spacing + cell.getRowStart() * (cellHeight + spacing);
-            float right = left + cell.getColSpan() * cellWidth + (cell.getColSpan() - 1) * spacing;
-            float bottom = top + cell.getRowSpan() * cellHeight + (cell.getRowSpan() - 1) * spacing;
-            
-            bounds.add(new RectF(left, top, right, bottom));
-        }
-        
         return bounds;
     }
 }
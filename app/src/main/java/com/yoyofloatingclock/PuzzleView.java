@@ -156,6 +156,19 @@ public class PuzzleView extends View {
         }
     }
     
+    /**
+     * 按格子当前尺寸计算解码尺寸，视图尚未布局时退回固定尺寸
+     */
+    public int[] getCellDecodeSize(int index, float headroom) {
+        if (index >= 0 && index < imageCells.size()) {
+            RectF bounds = imageCells.get(index).getBounds();
+            if (bounds.width() > 0 && bounds.height() > 0) {
+                return PuzzleImageCell.computeDecodeSize(bounds, headroom);
+            }
+        }
+        return new int[] {1000, 1000};
+    }
+    
     /**
      * 获取所有图片
      */
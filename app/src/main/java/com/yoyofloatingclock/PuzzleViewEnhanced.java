@@ -6,22 +6,32 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.RectF;
+import android.net.Uri;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewConfiguration;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 增强的拼图画布视图 - 支持点击格子添加图片
  */
 public class PuzzleViewEnhanced extends View {
     
+    // 拖动分隔线时单条轨道的最小尺寸（dp）
+    private static final int MIN_TRACK_SIZE_DP = 48;
+    private static final int DRAG_NONE = 0;
+    private static final int DRAG_COLUMN = 1;
+    private static final int DRAG_ROW = 2;
+    
     private List<PuzzleImageCell> imageCells;
-    private List<GridCell> gridCells;
+    private PackedLayout layout;  // 当前布局（不可变，可与布局变体共享）
     private Paint paint;
     private Paint borderPaint;
     private Paint plusPaint;
@@ -39,11 +49,38 @@ public class PuzzleViewEnhanced extends View {
     
     // 点击格子的回调
     private OnCellClickListener onCellClickListener;
+    // 点击检测索引，随布局重建
+    private CellHitIndex hitIndex;
+    // 深度缩放的原图分块解码
+    private RegionTileLoader tileLoader;
+    // 换图后收集仍在使用的原图时复用
+    private final Set<Uri> usedUris = new HashSet<>();
+    // 格子放大后需要更高分辨率的回调
+    private OnCellResolutionListener onCellResolutionListener;
+    
+    // 拖动行列之间的分隔线：只改两条相邻轨道的权重，原地更新格子边界，不重建格子
+    private int dragAxis = DRAG_NONE;
+    private int dragEdge;  // 被拖动的边缘序号（1..轨道数-1）
+    private float dragStartPosition;
+    private float dragStartWeight;  // 边缘前一条轨道在开始拖动时的权重
+    private float[] dragRowWeights;
+    private float[] dragColumnWeights;
+    private float[] dragBounds;  // 拖动时复用的bounds缓冲
+    // 按下位置附近的分隔线：沿拖动方向移动超过touchSlop才开始拖动，否则仍是点击/平移/缩放
+    private int pendingDragAxis = DRAG_NONE;
+    private int pendingDragEdge;
+    private float downX;
+    private float downY;
+    private int touchSlop;
     
     public interface OnCellClickListener {
         void onCellClick(int cellIndex);
     }
     
+    public interface OnCellResolutionListener {
+        void onCellNeedsResolution(int cellIndex, Uri sourceUri);
+    }
+    
     public PuzzleViewEnhanced(Context context) {
         this(context, null);
     }
@@ -55,7 +92,11 @@ public class PuzzleViewEnhanced extends View {
     
     private void init() {
         imageCells = new ArrayList<>();
-        gridCells = new ArrayList<>();
+        touchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+        
+        // 放大时按需从原图分块解码
+        tileLoader = new RegionTileLoader(getContext());
+        tileLoader.setOnTileReadyListener(this::invalidate);
         
         paint = new Paint(Paint.ANTI_ALIAS_FLAG);
         paint.setFilterBitmap(true);
@@ -120,6 +161,16 @@ public class PuzzleViewEnhanced extends View {
                 }
                 return false;
             }
+            
+            @Override
+            public void onScaleEnd(ScaleGestureDetector detector) {
+                // 放大超过解码余量时请求更高分辨率
+                if (activeCell != null && activeCell.needsHigherResolution()
+                        && onCellResolutionListener != null) {
+                    onCellResolutionListener.onCellNeedsResolution(
+                        imageCells.indexOf(activeCell), activeCell.getSourceUri());
+                }
+            }
         });
     }
     
@@ -127,46 +178,79 @@ public class PuzzleViewEnhanced extends View {
         this.onCellClickListener = listener;
     }
     
+    public void setOnCellResolutionListener(OnCellResolutionListener listener) {
+        this.onCellResolutionListener = listener;
+    }
+    
     /**
-     * 使用GridCell列表设置布局
+     * 使用GridCell列表设置布局（自定义布局编辑器返回的结果）
      */
     public void setLayoutFromCells(List<GridCell> cells) {
-        if (getWidth() <= 0 || getHeight() <= 0) {
-            post(() -> setLayoutFromCells(cells));
-            return;
-        }
-        
-        this.gridCells = new ArrayList<>(cells);
-        
-        // 计算所有GridCell的实际bounds
-        List<RectF> bounds = PuzzleLayoutEnhanced.calculateBounds(
-            cells, getWidth(), getHeight(), spacing
-        );
-        
-        // 为每个GridCell设置bounds
-        for (int i = 0; i < cells.size(); i++) {
-            cells.get(i).setBounds(bounds.get(i));
-        }
+        setLayout(PackedLayout.fromCells(cells));
+    }
+    
+    /**
+     * 设置布局；布局不可变，bounds只写入本视图自己的格子，不会改动共享的布局对象
+     *
+     * 格子对象尽量复用：格子数不变时位置不变，否则有图的格子按原顺序排在前面；
+     * 每个格子只更新边界，图片的裁切（缩放和平移）按归一化的裁切窗口保留；
+     * 视图还没有尺寸时格子先建好，边界等onSizeChanged时再计算
+     */
+    public void setLayout(PackedLayout newLayout) {
+        this.layout = newLayout;
+        activeCell = null;
         
-        // 保存现有图片
-        List<Bitmap> existingImages = new ArrayList<>();
-        for (PuzzleImageCell cell : imageCells) {
-            if (cell.hasImage()) {
-                existingImages.add(cell.getBitmap());
+        int count = newLayout.getCellCount();
+        if (count != imageCells.size()) {
+            List<PuzzleImageCell> arranged = new ArrayList<>(count);
+            for (PuzzleImageCell cell : imageCells) {
+                if (cell.hasImage()) arranged.add(cell);
             }
+            for (PuzzleImageCell cell : imageCells) {
+                if (!cell.hasImage()) arranged.add(cell);
+            }
+            // 新布局放不下的格子归还图片
+            while (arranged.size() > count) {
+                arranged.remove(arranged.size() - 1).clear();
+            }
+            releaseUnusedTiles();
+            while (arranged.size() < count) {
+                arranged.add(new PuzzleImageCell(new RectF()));
+            }
+            imageCells.clear();
+            imageCells.addAll(arranged);
         }
         
-        // 重新创建imageCells
-        imageCells.clear();
-        for (RectF bound : bounds) {
-            imageCells.add(new PuzzleImageCell(bound));
+        if (getWidth() > 0 && getHeight() > 0) {
+            applyGeometry();
+        } else {
+            // 旧布局的点击索引已不适用，尺寸确定前按格子的（空）边界逐个判断
+            hitIndex = null;
         }
-        
-        // 恢复图片
-        int imageIndex = 0;
-        for (int i = 0; i < imageCells.size() && imageIndex < existingImages.size(); i++) {
-            imageCells.get(i).setBitmap(existingImages.get(imageIndex++));
+    }
+    
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 尺寸变化（含首次布局、画布比例变化）只按最终尺寸更新一次几何，格子和裁切保持不变
+        if (layout != null && w > 0 && h > 0) {
+            applyGeometry();
         }
+    }
+    
+    /**
+     * 按当前布局、尺寸和间距更新所有格子的边界和点击索引，不重建格子
+     */
+    private void applyGeometry() {
+        // 计算所有格子的实际bounds
+        float[] bounds = layout.getBounds(getWidth(), getHeight(), spacing);
+        for (int i = 0, count = imageCells.size(); i < count; i++) {
+            imageCells.get(i).updateBounds(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]);
+        }
+        
+        // 点击检测索引，与bounds使用同一组几何参数；按归一化位置排布的布局没有统一网格，逐个判断
+        hitIndex = layout.isFractional() ? null
+            : CellHitIndex.fromLayout(layout, getWidth(), getHeight(), spacing);
         
         invalidate();
     }
@@ -175,19 +259,54 @@ public class PuzzleViewEnhanced extends View {
      * 使用布局变体设置布局
      */
     public void setLayoutVariant(PuzzleLayoutEnhanced.LayoutVariant variant) {
-        setLayoutFromCells(variant.getGridCells());
+        setLayout(variant.getLayout());
     }
     
     /**
      * 为指定格子设置图片
      */
     public void setImageForCell(int cellIndex, Bitmap bitmap) {
+        setImageForCell(cellIndex, bitmap, null);
+    }
+    
+    /**
+     * 为指定格子设置图片，并记录来源以便放大时重新解码
+     */
+    public void setImageForCell(int cellIndex, Bitmap bitmap, Uri sourceUri) {
         if (cellIndex >= 0 && cellIndex < imageCells.size()) {
-            imageCells.get(cellIndex).setBitmap(bitmap);
+            imageCells.get(cellIndex).setBitmap(bitmap, sourceUri);
+            releaseUnusedTiles();
             invalidate();
         }
     }
     
+    /**
+     * 用更高分辨率的版本替换格子图片，保持缩放和平移
+     *
+     * @return 格子已换成别的图时返回false，调用方需自行释放bitmap
+     */
+    public boolean replaceCellBitmap(int cellIndex, Uri sourceUri, Bitmap bitmap) {
+        if (cellIndex >= 0 && cellIndex < imageCells.size()) {
+            PuzzleImageCell cell = imageCells.get(cellIndex);
+            if (sourceUri != null && sourceUri.equals(cell.getSourceUri())) {
+                cell.replaceBitmap(bitmap);
+                invalidate();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 按格子当前尺寸计算解码尺寸，视图尚未布局时返回null
+     */
+    public int[] getCellDecodeSize(int cellIndex, float headroom) {
+        if (cellIndex < 0 || cellIndex >= imageCells.size()) return null;
+        RectF bounds = imageCells.get(cellIndex).getBounds();
+        if (bounds.width() <= 0 || bounds.height() <= 0) return null;
+        return PuzzleImageCell.computeDecodeSize(bounds, headroom);
+    }
+    
     /**
      * 添加图片到第一个空格子
      */
@@ -207,6 +326,7 @@ public class PuzzleViewEnhanced extends View {
     public void setImage(int index, Bitmap bitmap) {
         if (index >= 0 && index < imageCells.size()) {
             imageCells.get(index).setBitmap(bitmap);
+            releaseUnusedTiles();
             invalidate();
         }
     }
@@ -218,6 +338,7 @@ public class PuzzleViewEnhanced extends View {
         for (int i = 0; i < Math.min(bitmaps.size(), imageCells.size()); i++) {
             imageCells.get(i).setBitmap(bitmaps.get(i));
         }
+        releaseUnusedTiles();
         invalidate();
     }
     
@@ -241,17 +362,37 @@ public class PuzzleViewEnhanced extends View {
         for (PuzzleImageCell cell : imageCells) {
             cell.clear();
         }
+        releaseUnusedTiles();
         invalidate();
     }
     
+    /**
+     * 格子换图或清空后，关闭不再有格子使用的原图的分块解码器
+     */
+    private void releaseUnusedTiles() {
+        usedUris.clear();
+        for (int i = 0, count = imageCells.size(); i < count; i++) {
+            Uri uri = imageCells.get(i).getSourceUri();
+            if (uri != null) usedUris.add(uri);
+        }
+        tileLoader.retainOnly(usedUris);
+    }
+    
     /**
      * 查找指定坐标下的格子索引
      */
     private int findCellIndexAt(float x, float y) {
-        for (int i = 0; i < imageCells.size(); i++) {
-            if (imageCells.get(i).contains(x, y)) {
-                return i;
+        if (hitIndex == null) {
+            for (int i = 0; i < imageCells.size(); i++) {
+                if (imageCells.get(i).contains(x, y)) return i;
             }
+            return -1;
+        }
+        // 索引给出候选格子，再用实际边界排除落在间距里的点
+        int candidate = hitIndex.findCandidate(x, y);
+        if (candidate >= 0 && candidate < imageCells.size()
+                && imageCells.get(candidate).contains(x, y)) {
+            return candidate;
         }
         return -1;
     }
@@ -260,12 +401,8 @@ public class PuzzleViewEnhanced extends View {
      * 查找指定坐标下的格子
      */
     private PuzzleImageCell findCellAt(float x, float y) {
-        for (PuzzleImageCell cell : imageCells) {
-            if (cell.contains(x, y)) {
-                return cell;
-            }
-        }
-        return null;
+        int index = findCellIndexAt(x, y);
+        return index >= 0 ? imageCells.get(index) : null;
     }
     
     @Override
@@ -274,10 +411,15 @@ public class PuzzleViewEnhanced extends View {
         
         canvas.drawColor(backgroundColor);
         
-        for (PuzzleImageCell cell : imageCells) {
+        // 上一帧请求但已不可见的块不再解码
+        tileLoader.cancelPendingTiles();
+        
+        // 格子可能有上百个，按下标遍历，绘制时不分配对象
+        for (int i = 0, count = imageCells.size(); i < count; i++) {
+            PuzzleImageCell cell = imageCells.get(i);
             if (cell.hasImage()) {
-                // 绘制有图片的格子
-                cell.draw(canvas, paint);
+                // 绘制有图片的格子，放大时叠加原图分块
+                cell.draw(canvas, paint, tileLoader);
             } else {
                 // 绘制空格子 + "+" 号
                 RectF bounds = cell.getBounds();
@@ -326,6 +468,38 @@ public class PuzzleViewEnhanced extends View {
     
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (dragAxis != DRAG_NONE) {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_MOVE:
+                    dragDivider(dragAxis == DRAG_COLUMN ? event.getX() : event.getY());
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    finishDividerDrag();
+                    break;
+            }
+            return true;
+        }
+        
+        boolean nearDivider = false;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                nearDivider = findDividerAt(event.getX(), event.getY());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (pendingDragAxis != DRAG_NONE && passedDividerSlop(event)) {
+                    startDividerDrag(event);
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                // 第二根手指按下（缩放）或手势结束，不再是拖动分隔线
+                pendingDragAxis = DRAG_NONE;
+                break;
+        }
+        
         boolean handled = scaleGestureDetector.onTouchEvent(event);
         handled = gestureDetector.onTouchEvent(event) || handled;
         
@@ -334,7 +508,137 @@ public class PuzzleViewEnhanced extends View {
             activeCell = null;
         }
         
-        return handled || super.onTouchEvent(event);
+        // 按在格子间隙的分隔线上时也要接收后续事件
+        return handled || nearDivider || super.onTouchEvent(event);
+    }
+    
+    /**
+     * 按下的位置在两条轨道之间的分隔线上时记下候选（分隔线两侧不能是同一个跨越它的格子）
+     */
+    private boolean findDividerAt(float x, float y) {
+        pendingDragAxis = DRAG_NONE;
+        if (layout == null || layout.isFractional() || imageCells.isEmpty()) return false;
+        
+        int edge = findDivider(x, y, layout.getColumnCount(), getWidth(), true);
+        int axis = DRAG_COLUMN;
+        if (edge < 0) {
+            edge = findDivider(y, x, layout.getRowCount(), getHeight(), false);
+            axis = DRAG_ROW;
+        }
+        if (edge < 0) return false;
+        
+        pendingDragAxis = axis;
+        pendingDragEdge = edge;
+        downX = x;
+        downY = y;
+        return true;
+    }
+    
+    /**
+     * 移动超过touchSlop时判断是否拖动分隔线：主要沿拖动方向移动才算，
+     * 主要沿分隔线方向移动时放弃候选，交给平移
+     */
+    private boolean passedDividerSlop(MotionEvent event) {
+        float dx = Math.abs(event.getX() - downX);
+        float dy = Math.abs(event.getY() - downY);
+        float along = pendingDragAxis == DRAG_COLUMN ? dx : dy;
+        float across = pendingDragAxis == DRAG_COLUMN ? dy : dx;
+        if (Math.max(along, across) <= touchSlop) return false;
+        if (along > across) return true;
+        pendingDragAxis = DRAG_NONE;
+        return false;
+    }
+    
+    /**
+     * 开始拖动候选分隔线，取消已经交给手势检测器的点击/平移
+     */
+    private void startDividerDrag(MotionEvent event) {
+        int axis = pendingDragAxis;
+        pendingDragAxis = DRAG_NONE;
+        
+        MotionEvent cancel = MotionEvent.obtain(event);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        scaleGestureDetector.onTouchEvent(cancel);
+        gestureDetector.onTouchEvent(cancel);
+        cancel.recycle();
+        activeCell = null;
+        getParent().requestDisallowInterceptTouchEvent(true);
+        
+        dragAxis = axis;
+        dragEdge = pendingDragEdge;
+        // 从按下的位置算起，分隔线始终跟着手指
+        dragStartPosition = axis == DRAG_COLUMN ? downX : downY;
+        dragRowWeights = layout.getRowWeights();
+        dragColumnWeights = layout.getColumnWeights();
+        dragStartWeight = (axis == DRAG_COLUMN ? dragColumnWeights : dragRowWeights)[dragEdge - 1];
+        if (dragBounds == null || dragBounds.length < layout.getCellCount() * 4) {
+            dragBounds = new float[layout.getCellCount() * 4];
+        }
+        dragDivider(axis == DRAG_COLUMN ? event.getX() : event.getY());
+    }
+    
+    /**
+     * 查找position附近的内部边缘，across为垂直方向上的坐标
+     *
+     * @param columns true时在列之间查找（position为x），否则在行之间查找（position为y）
+     */
+    private int findDivider(float position, float across, int trackCount, int size, boolean columns) {
+        float usable = size - spacing;
+        float reach = Math.max(spacing / 2f, touchSlop);
+        for (int edge = 1; edge < trackCount; edge++) {
+            float gapStart = (columns ? layout.getColumnEdge(edge) : layout.getRowEdge(edge)) * usable;
+            float gapEnd = gapStart + spacing;
+            if (Math.abs(position - (gapStart + gapEnd) / 2) > reach) continue;
+            
+            int before = columns ? findCellIndexAt(gapStart - 1, across) : findCellIndexAt(across, gapStart - 1);
+            int after = columns ? findCellIndexAt(gapEnd + 1, across) : findCellIndexAt(across, gapEnd + 1);
+            if (before != after || before < 0) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 拖动中：只改被拖动边缘两侧两条轨道的权重，O(行数 + 列数)算出新边缘，再原地更新格子边界
+     */
+    private void dragDivider(float position) {
+        boolean columns = dragAxis == DRAG_COLUMN;
+        float[] weights = columns ? dragColumnWeights : dragRowWeights;
+        float usable = (columns ? getWidth() : getHeight()) - spacing;
+        if (usable <= 0) return;
+        
+        float pair = weights[dragEdge - 1] + weights[dragEdge];
+        float minWeight = Math.min(pair / 2,
+            (MIN_TRACK_SIZE_DP * getResources().getDisplayMetrics().density + spacing) / usable);
+        float before = dragStartWeight + (position - dragStartPosition) / usable;
+        before = Math.max(minWeight, Math.min(before, pair - minWeight));
+        weights[dragEdge - 1] = before;
+        weights[dragEdge] = pair - before;
+        
+        layout = layout.withTrackWeights(dragRowWeights, dragColumnWeights);
+        layout.computeBounds(getWidth(), getHeight(), spacing, dragBounds);
+        for (int i = 0, count = imageCells.size(); i < count; i++) {
+            imageCells.get(i).updateBounds(
+                dragBounds[i * 4], dragBounds[i * 4 + 1], dragBounds[i * 4 + 2], dragBounds[i * 4 + 3]);
+        }
+        invalidate();
+    }
+    
+    private void finishDividerDrag() {
+        dragAxis = DRAG_NONE;
+        // 拖动结束后按新的轨道重建点击索引
+        hitIndex = CellHitIndex.fromLayout(layout, getWidth(), getHeight(), spacing);
+    }
+    
+    /**
+     * 页面退出时调用，归还格子图片，释放分块解码器和缓存
+     */
+    public void release() {
+        for (PuzzleImageCell cell : imageCells) {
+            cell.clear();
+        }
+        tileLoader.release();
     }
     
     /**
@@ -367,16 +671,17 @@ public class PuzzleViewEnhanced extends View {
     
     public void setSpacing(int spacing) {
         this.spacing = spacing;
-        // 重新应用当前布局
-        if (!gridCells.isEmpty()) {
-            setLayoutFromCells(gridCells);
+        // 只更新几何，格子和裁切保持不变
+        if (layout != null && getWidth() > 0 && getHeight() > 0) {
+            applyGeometry();
         }
     }
     
     public void setCanvasAspectRatio(float aspectRatio) {
+        if (aspectRatio == canvasAspectRatio) return;
         this.canvasAspectRatio = aspectRatio;
-        requestLayout();  // 触发重新测量
-        invalidate();
+        // 视图尺寸需要重新测量；格子边界在onSizeChanged里按新尺寸更新，尺寸没变时不做任何事
+        requestLayout();
     }
     
     public int getCellCount() {
@@ -0,0 +1,312 @@
+package com.yoyofloatingclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深度缩放的分块解码 - 用BitmapRegionDecoder从原图按需解码可见区域
+ *
+ * 原图按采样级别（2的幂）切成TILE_SIZE大小的块，只解码当前可见的块；
+ * 解码在后台线程进行，完成后回到主线程放入LRU缓存并通知重绘，
+ * 未就绪时格子继续显示粗略的整图。带EXIF旋转的图片不做分块解码。
+ * 解码器的打开、使用和关闭都在同一个工作线程上，关闭不会与正在进行的解码冲突。
+ */
+public class RegionTileLoader {
+
+    // 每个块解码后的边长（像素）
+    public static final int TILE_SIZE = 512;
+
+    // 原图尺寸读取失败或不支持分块解码时的标记
+    private static final int[] UNSUPPORTED = new int[0];
+
+    /**
+     * 块的缓存键：(uri, 采样级别, 列, 行)
+     */
+    private static final class TileKey {
+        Uri uri;
+        int level;
+        int column;
+        int row;
+
+        TileKey set(Uri uri, int level, int column, int row) {
+            this.uri = uri;
+            this.level = level;
+            this.column = column;
+            this.row = row;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+            TileKey other = (TileKey) o;
+            return level == other.level && column == other.column && row == other.row
+                && uri.equals(other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = uri.hashCode();
+            result = 31 * result + level;
+            result = 31 * result + column;
+            result = 31 * result + row;
+            return result;
+        }
+    }
+
+    /**
+     * 排队中的块解码任务，取消时据此清理pending标记
+     */
+    private final class TileTask implements Runnable {
+        final TileKey key;
+
+        TileTask(TileKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            if (released) return;
+            Bitmap tile = decodeTile(key);
+            mainHandler.post(() -> {
+                pendingTiles.remove(key);
+                if (released) {
+                    if (tile != null) tile.recycle();
+                    return;
+                }
+                if (tile != null) {
+                    tileCache.put(key, tile);
+                    notifyTileReady();
+                }
+            });
+        }
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private final LruCache<TileKey, Bitmap> tileCache;
+    private final Map<Uri, BitmapRegionDecoder> decoders = new ConcurrentHashMap<>();
+    private final Map<Uri, int[]> sourceSizes = new ConcurrentHashMap<>();
+    private final Set<Uri> openingUris = ConcurrentHashMap.newKeySet();
+    private final Set<TileKey> pendingTiles = ConcurrentHashMap.newKeySet();
+    // 只在主线程查询缓存时复用，避免每帧分配
+    private final TileKey lookupKey = new TileKey();
+    // 只在主线程取消排队任务时复用
+    private final List<Runnable> drainedTasks = new ArrayList<>();
+    private Runnable onTileReadyListener;
+    private volatile boolean released = false;
+
+    public RegionTileLoader(Context context) {
+        this.context = context.getApplicationContext();
+
+        // 块缓存占可用堆的1/8
+        int cacheBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        tileCache = new LruCache<TileKey, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(TileKey key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, TileKey key, Bitmap oldValue, Bitmap newValue) {
+                // 缓存只在主线程读写，被淘汰的块不会再被绘制
+                if (oldValue != newValue && !oldValue.isRecycled()) {
+                    oldValue.recycle();
+                }
+            }
+        };
+
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "region-decode");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 有新的块解码完成时回调（主线程）
+     */
+    public void setOnTileReadyListener(Runnable listener) {
+        this.onTileReadyListener = listener;
+    }
+
+    /**
+     * 原图尺寸，未读取完成或不支持分块解码时返回null；首次调用会在后台打开解码器
+     */
+    public int[] getSourceSize(Uri uri) {
+        int[] size = sourceSizes.get(uri);
+        if (size != null) {
+            return size == UNSUPPORTED ? null : size;
+        }
+        if (!released && openingUris.add(uri)) {
+            executor.execute(() -> {
+                sourceSizes.put(uri, openDecoder(uri));
+                openingUris.remove(uri);
+                mainHandler.post(this::notifyTileReady);
+            });
+        }
+        return null;
+    }
+
+    /**
+     * 从缓存取块（主线程），没有时返回null
+     */
+    public Bitmap getTile(Uri uri, int level, int column, int row) {
+        return tileCache.get(lookupKey.set(uri, level, column, row));
+    }
+
+    /**
+     * 请求解码一个块（主线程），已在排队的不会重复提交
+     */
+    public void requestTile(Uri uri, int level, int column, int row) {
+        if (released) return;
+        TileKey key = new TileKey().set(uri, level, column, row);
+        if (pendingTiles.add(key)) {
+            executor.execute(new TileTask(key));
+        }
+    }
+
+    /**
+     * 丢弃尚未开始的块解码任务；每帧绘制前调用，只保留当前仍可见的块请求
+     */
+    public void cancelPendingTiles() {
+        if (released || executor.getQueue().isEmpty()) return;
+        executor.getQueue().drainTo(drainedTasks);
+        for (int i = 0, count = drainedTasks.size(); i < count; i++) {
+            Runnable runnable = drainedTasks.get(i);
+            if (runnable instanceof TileTask) {
+                pendingTiles.remove(((TileTask) runnable).key);
+            } else {
+                // 打开/关闭解码器的任务不能丢
+                executor.execute(runnable);
+            }
+        }
+        drainedTasks.clear();
+    }
+
+    /**
+     * 关闭不在inUse中的原图的解码器，丢弃其缓存的块（主线程）；格子换图或清空后调用
+     */
+    public void retainOnly(Set<Uri> inUse) {
+        if (released) return;
+        List<Uri> unused = new ArrayList<>();
+        for (Uri uri : sourceSizes.keySet()) {
+            if (!inUse.contains(uri)) unused.add(uri);
+        }
+        for (Uri uri : openingUris) {
+            if (!inUse.contains(uri) && !unused.contains(uri)) unused.add(uri);
+        }
+        if (unused.isEmpty()) return;
+
+        for (TileKey key : tileCache.snapshot().keySet()) {
+            if (unused.contains(key.uri)) {
+                tileCache.remove(key);
+            }
+        }
+        for (Uri uri : unused) {
+            sourceSizes.remove(uri);
+        }
+        // 排在已提交的打开任务之后，打开中的解码器也会被关掉
+        executor.execute(() -> {
+            for (Uri uri : unused) {
+                BitmapRegionDecoder decoder = decoders.remove(uri);
+                if (decoder != null) {
+                    decoder.recycle();
+                }
+                sourceSizes.remove(uri);
+            }
+        });
+    }
+
+    /**
+     * 页面退出时调用，释放解码器和缓存的块
+     */
+    public void release() {
+        if (released) return;
+        released = true;
+        tileCache.evictAll();
+        // 排队的任务直接丢掉；解码器在工作线程上、正在进行的解码结束后再关闭
+        executor.getQueue().clear();
+        executor.execute(() -> {
+            for (BitmapRegionDecoder decoder : decoders.values()) {
+                decoder.recycle();
+            }
+            decoders.clear();
+        });
+        executor.shutdown();
+    }
+
+    private void notifyTileReady() {
+        if (!released && onTileReadyListener != null) {
+            onTileReadyListener.run();
+        }
+    }
+
+    /**
+     * 工作线程：打开区域解码器，返回原图尺寸
+     */
+    private int[] openDecoder(Uri uri) {
+        // 区域解码在未旋转的坐标系中进行，与按EXIF旋转过的整图对不上
+        if (BitmapDecodeHelper.readRotation(context, uri) != 0) {
+            return UNSUPPORTED;
+        }
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) return UNSUPPORTED;
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in, false);
+            if (decoder == null) return UNSUPPORTED;
+            decoders.put(uri, decoder);
+            return new int[] {decoder.getWidth(), decoder.getHeight()};
+        } catch (IOException e) {
+            // 格式不支持区域解码（如GIF）时只用整图
+            return UNSUPPORTED;
+        }
+    }
+
+    /**
+     * 工作线程：按块坐标解码原图区域
+     */
+    private Bitmap decodeTile(TileKey key) {
+        BitmapRegionDecoder decoder = decoders.get(key.uri);
+        if (decoder == null || decoder.isRecycled()) return null;
+
+        int span = TILE_SIZE * key.level;
+        Rect region = new Rect(key.column * span, key.row * span,
+            (key.column + 1) * span, (key.row + 1) * span);
+        if (!region.intersect(0, 0, decoder.getWidth(), decoder.getHeight())) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = key.level;
+        // 块既要上屏也会在导出时绘制到软件Canvas，用RGB_565而不是HARDWARE
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException | OutOfMemoryError e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.yoyofloatingclock;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 拼接导出 - 从原图Uri逐张流式解码并绘制到结果图上，
+ * 同一时刻只有一张原图在内存中，预览只需持有缩略图
+ */
+public class StitchExporter {
+
+    // 拼接方向上的垂直边（横拼的高度/竖拼的宽度）上限
+    private static final int MAX_CROSS_SIZE = 2160;
+    // 结果图的像素总量上限（约96MB ARGB_8888）
+    private static final long MAX_OUTPUT_PIXELS = 24_000_000L;
+
+    private final Context context;
+    private boolean trimOverlaps = false;
+
+    public StitchExporter(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 竖拼时是否自动检测并裁掉相邻长截图之间的重叠带
+     */
+    public void setTrimOverlaps(boolean trimOverlaps) {
+        this.trimOverlaps = trimOverlaps;
+    }
+
+    /**
+     * 导出拼接结果
+     *
+     * @param uris            按顺序排列的原图
+     * @param mode            拼接方向
+     * @param spacingRatio    间距相对于预览尺寸的比例
+     * @param backgroundColor 背景色
+     */
+    public Bitmap export(List<Uri> uris, StitchMode mode, float spacingRatio,
+                         int backgroundColor) throws IOException {
+        if (uris.isEmpty()) {
+            throw new IOException("没有可导出的图片");
+        }
+
+        // 第一遍：只读尺寸，确定输出大小
+        List<BitmapDecodeHelper.ImageInfo> infos = new ArrayList<>(uris.size());
+        int crossSize = MAX_CROSS_SIZE;
+        for (Uri uri : uris) {
+            BitmapDecodeHelper.ImageInfo info = BitmapDecodeHelper.readImageInfo(context, uri);
+            infos.add(info);
+            crossSize = Math.min(crossSize,
+                mode == StitchMode.HORIZONTAL ? info.height : info.width);
+        }
+
+        int spacing = Math.round(crossSize * spacingRatio);
+        // 按未裁剪的总长分配结果图，裁剪只会让实际内容变短
+        long mainSize = measureMainSize(infos, mode, crossSize, spacing);
+
+        // 超出像素预算时整体缩小
+        if (mainSize * crossSize > MAX_OUTPUT_PIXELS) {
+            float scale = (float) Math.sqrt(MAX_OUTPUT_PIXELS / (double) (mainSize * crossSize));
+            crossSize = Math.max(1, (int) (crossSize * scale));
+            spacing = Math.round(crossSize * spacingRatio);
+            mainSize = measureMainSize(infos, mode, crossSize, spacing);
+        }
+
+        int outWidth = (int) (mode == StitchMode.HORIZONTAL ? mainSize : crossSize);
+        int outHeight = (int) (mode == StitchMode.HORIZONTAL ? crossSize : mainSize);
+        Bitmap result = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(result);
+        canvas.drawColor(backgroundColor);
+
+        // 第二遍：逐张解码、（竖拼去重叠时）与上一张比对、绘制、释放，每张图只解码一次
+        boolean trim = trimOverlaps && mode == StitchMode.VERTICAL && uris.size() > 1;
+        OverlapDetector detector = trim ? new OverlapDetector() : null;
+        OverlapDetector.Rows previousRows = null;
+        int previousLength = 0;
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        Paint clearPaint = new Paint();
+        clearPaint.setColor(backgroundColor);
+        BitmapStore store = BitmapStore.get(context);
+        RectF dst = new RectF();
+        Rect src = new Rect();
+        int cursor = 0;
+        for (int i = 0; i < uris.size(); i++) {
+            BitmapDecodeHelper.ImageInfo info = infos.get(i);
+            int fullLength = scaledLength(info, mode, crossSize);
+            int reqWidth = mode == StitchMode.HORIZONTAL ? fullLength : crossSize;
+            int reqHeight = mode == StitchMode.HORIZONTAL ? crossSize : fullLength;
+
+            // 同尺寸截图之间复用上一张的内存
+            Bitmap source = BitmapDecodeHelper.decodeSampled(context, uris.get(i), info,
+                reqWidth, reqHeight, store.takeReusable(
+                    BitmapDecodeHelper.estimateSampledBytes(info, reqWidth, reqHeight)));
+            int sourceHeight = source.getHeight();
+
+            // 下图顶部裁掉的源图行数；上图底部的固定栏直接由下图覆盖
+            int skipRows = 0;
+            boolean joined = false;
+            if (trim) {
+                OverlapDetector.Rows rows = readRows(source);
+                // 只有同宽（同分辨率截图）的相邻两张才可能逐行相同
+                if (previousRows != null && previousRows.getWidth() == rows.getWidth()) {
+                    OverlapDetector.Result overlap = detector.detect(previousRows, rows);
+                    if (overlap.hasOverlap()) {
+                        int previousEnd = cursor;
+                        cursor -= Math.round(previousLength * overlap.trimBottomOfFirst
+                            / (float) previousRows.getHeight());
+                        // 清掉退回的上图固定栏，下图剩余部分较短时也不会残留
+                        canvas.drawRect(0, cursor, crossSize, previousEnd, clearPaint);
+                        skipRows = overlap.trimTopOfSecond;
+                        joined = true;
+                    }
+                }
+                previousRows = rows;
+                previousLength = fullLength;
+            }
+
+            // 去除了重叠的两张直接衔接，不留间距
+            if (i > 0 && !joined) {
+                cursor += spacing;
+            }
+
+            int length = skipRows == 0 ? fullLength
+                : Math.max(1, Math.round(fullLength * (sourceHeight - skipRows) / (float) sourceHeight));
+            src.set(0, skipRows, source.getWidth(), sourceHeight);
+            if (mode == StitchMode.HORIZONTAL) {
+                dst.set(cursor, 0, cursor + length, crossSize);
+            } else {
+                dst.set(0, cursor, crossSize, cursor + length);
+            }
+            canvas.drawBitmap(source, src, dst, paint);
+            store.offer(source);
+
+            cursor += length;
+        }
+
+        // 裁掉了重叠时实际内容比分配的短，原地缩小高度，同宽时前cursor行的像素保持不变
+        if (mode == StitchMode.VERTICAL && cursor < outHeight) {
+            result.reconfigure(outWidth, cursor, Bitmap.Config.ARGB_8888);
+        }
+        return result;
+    }
+
+    /**
+     * 逐行读取像素计算重叠检测所需的行特征，只保留行哈希和亮度采样
+     */
+    private static OverlapDetector.Rows readRows(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        OverlapDetector.Rows rows = new OverlapDetector.Rows(width, height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            rows.setRow(y, row, 0);
+        }
+        return rows;
+    }
+
+    private static long measureMainSize(List<BitmapDecodeHelper.ImageInfo> infos, StitchMode mode,
+                                        int crossSize, int spacing) {
+        long total = (long) spacing * (infos.size() - 1);
+        for (BitmapDecodeHelper.ImageInfo info : infos) {
+            total += scaledLength(info, mode, crossSize);
+        }
+        return total;
+    }
+
+    /**
+     * 图片缩放到crossSize后在拼接方向上的长度
+     */
+    private static int scaledLength(BitmapDecodeHelper.ImageInfo info, StitchMode mode, int crossSize) {
+        if (mode == StitchMode.HORIZONTAL) {
+            return Math.max(1, Math.round(info.width * (float) crossSize / info.height));
+        }
+        return Math.max(1, Math.round(info.height * (float) crossSize / info.width));
+    }
+}
@@ -2,36 +2,48 @@ package com.yoyofloatingclock;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.util.AttributeSet;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.Button;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 增强的图片拼接View - 支持横向和纵向拼接，每张图片带插入/删除按钮
+ * 基于RecyclerView实现，只绑定可见项和预取范围内的图片
  */
-public class StitchingView extends LinearLayout {
+public class StitchingView extends RecyclerView {
+
+    // 预览时每张图片的基准尺寸（横拼为高度，竖拼为宽度换算基准），缩略图也按此尺寸解码
+    static final int PREVIEW_SIZE = 300;
     
     private StitchMode stitchMode = StitchMode.HORIZONTAL;
     private List<Bitmap> images = new ArrayList<>();
-    private List<ImageItem> imageItems = new ArrayList<>();
     
     private int spacing = 0;
     private int backgroundColor = Color.WHITE;
     
     private OnImageActionListener actionListener;
+
+    private StitchLayoutManager layoutManager;
+    private ImageAdapter adapter;
+
+    // 按钮背景原型，新建的图片项通过ConstantState共享，不再逐项构建GradientDrawable
+    private GradientDrawable insertButtonBackground;
+    private GradientDrawable deleteButtonBackground;
     
     public interface OnImageActionListener {
         void onInsertBefore(int position);
@@ -48,8 +60,27 @@ public class StitchingView extends LinearLayout {
     }
     
     private void init() {
-        setOrientation(VERTICAL);  // 默认纵向，会根据mode改变
         setBackgroundColor(backgroundColor);
+
+        layoutManager = new StitchLayoutManager(getContext());
+        layoutManager.setOrientation(LinearLayoutManager.HORIZONTAL);
+        setLayoutManager(layoutManager);
+
+        adapter = new ImageAdapter();
+        setAdapter(adapter);
+
+        addItemDecoration(new SpacingDecoration());
+        setItemViewCacheSize(4);
+
+        insertButtonBackground = createRoundBackground(0xFF4CAF50);  // 绿色
+        deleteButtonBackground = createRoundBackground(0xFF757575);  // 深灰色
+    }
+
+    private static GradientDrawable createRoundBackground(int color) {
+        GradientDrawable drawable = new GradientDrawable();
+        drawable.setShape(GradientDrawable.OVAL);
+        drawable.setColor(color);
+        return drawable;
     }
     
     public void setOnImageActionListener(OnImageActionListener listener) {
@@ -60,9 +91,12 @@ public class StitchingView extends LinearLayout {
      * 设置拼接模式
      */
     public void setStitchMode(StitchMode mode) {
+        if (this.stitchMode == mode) return;
         this.stitchMode = mode;
-        setOrientation(mode == StitchMode.HORIZONTAL ? HORIZONTAL : VERTICAL);
-        updateImages();
+        layoutManager.setOrientation(mode == StitchMode.HORIZONTAL ?
+            LinearLayoutManager.HORIZONTAL : LinearLayoutManager.VERTICAL);
+        // 方向改变后每项尺寸都变了，需要整体重新绑定
+        adapter.notifyDataSetChanged();
     }
     
     /**
@@ -70,7 +104,9 @@ public class StitchingView extends LinearLayout {
      */
     public void addImage(Bitmap bitmap) {
         images.add(bitmap);
-        updateImages();
+        adapter.notifyItemInserted(images.size() - 1);
+        // 原来的最后一项现在需要留出间距
+        notifyLastItemChanged(images.size() - 2);
     }
     
     /**
@@ -79,130 +115,200 @@ public class StitchingView extends LinearLayout {
     public void insertImage(int position, Bitmap bitmap) {
         if (position >= 0 && position <= images.size()) {
             images.add(position, bitmap);
-            updateImages();
+            adapter.notifyItemInserted(position);
+            if (position == images.size() - 1) {
+                notifyLastItemChanged(position - 1);
+            }
         }
     }
     
     /**
-     * 删除指定位置的图片（不回收bitmap，由外部管理）
+     * 删除指定位置的图片（不回收bitmap，引用由调用方向BitmapStore归还）
      */
     public void removeImage(int position) {
         if (position >= 0 && position < images.size()) {
-            images.remove(position);  // 不recycle，由Activity管理
-            updateImages();
+            images.remove(position);  // 不recycle，由BitmapStore统一管理
+            adapter.notifyItemRemoved(position);
+            if (position == images.size()) {
+                // 删掉的是最后一项，前一项成为最后一项，不再需要间距
+                notifyLastItemChanged(position - 1);
+            }
         }
     }
     
     /**
-     * 设置所有图片
+     * 设置所有图片，与当前列表做差量比较，只刷新变化的项
      */
     public void setImages(List<Bitmap> images) {
-        this.images.clear();
-        this.images.addAll(images);
-        updateImages();
+        final List<Bitmap> oldImages = this.images;
+        final List<Bitmap> newImages = new ArrayList<>(images);
+
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldImages.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newImages.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldImages.get(oldPosition) == newImages.get(newPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return true;
+            }
+        }, false);
+
+        this.images = newImages;
+        diff.dispatchUpdatesTo(adapter);
+        // 最后一项可能变了，重新计算各项的间距
+        invalidateItemDecorations();
+    }
+    
+    /**
+     * 间距只加在非最后一项上，最后一项变化时让原来/新的相邻项重新计算偏移
+     */
+    private void notifyLastItemChanged(int position) {
+        if (spacing > 0 && position >= 0 && position < images.size()) {
+            adapter.notifyItemChanged(position);
+        }
     }
     
     /**
      * 清空图片（不回收bitmap）
      */
     public void clearImages() {
+        int count = images.size();
         images.clear();
-        imageItems.clear();
-        removeAllViews();
+        adapter.notifyItemRangeRemoved(0, count);
     }
     
     /**
      * 设置间距
      */
     public void setSpacing(int spacing) {
+        if (this.spacing == spacing) return;
         this.spacing = spacing;
-        updateImages();
+        invalidateItemDecorations();
+    }
+    
+    public int getImageCount() {
+        return images.size();
+    }
+    
+    public StitchMode getStitchMode() {
+        return stitchMode;
     }
     
     /**
-     * 更新图片显示
+     * 横拼时单项宽度（高度固定为PREVIEW_SIZE）
      */
-    private void updateImages() {
-        removeAllViews();
-        imageItems.clear();
-        
-        for (int i = 0; i < images.size(); i++) {
-            final int position = i;
-            Bitmap bitmap = images.get(i);
-            
-            // 跳过无效的bitmap
-            if (bitmap == null || bitmap.isRecycled()) {
-                continue;
+    private static int getItemWidth(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return 0;
+        return (int) (bitmap.getWidth() * (float) PREVIEW_SIZE / bitmap.getHeight());
+    }
+
+    /**
+     * 竖拼时单项高度（宽度充满）
+     */
+    private static int getItemHeight(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return 0;
+        return (int) (bitmap.getHeight() * (float) PREVIEW_SIZE / bitmap.getWidth());
+    }
+
+    /**
+     * 在可见区域外额外布局半屏作为预取范围，快速滚动时不会出现空白
+     */
+    private static class StitchLayoutManager extends LinearLayoutManager {
+
+        StitchLayoutManager(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void calculateExtraLayoutSpace(@NonNull State state, @NonNull int[] extraLayoutSpace) {
+            int extra = (getOrientation() == HORIZONTAL ? getWidth() : getHeight()) / 2;
+            extraLayoutSpace[0] = extra;
+            extraLayoutSpace[1] = extra;
+        }
+    }
+
+    /**
+     * 图片间距 - 除最后一项外，每项后面留出spacing
+     */
+    private class SpacingDecoration extends ItemDecoration {
+        @Override
+        public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+                                   @NonNull RecyclerView parent, @NonNull State state) {
+            int position = parent.getChildAdapterPosition(view);
+            if (position == NO_POSITION || position >= state.getItemCount() - 1 || spacing <= 0) {
+                outRect.setEmpty();
+                return;
             }
-            
-            ImageItem item = new ImageItem(getContext());
-            item.setImage(bitmap, stitchMode);
-            item.setOnInsertClickListener(v -> {
-                if (actionListener != null) {
+            if (stitchMode == StitchMode.HORIZONTAL) {
+                outRect.set(0, 0, spacing, 0);
+            } else {
+                outRect.set(0, 0, 0, spacing);
+            }
+        }
+    }
+
+    private class ImageAdapter extends Adapter<ImageHolder> {
+
+        @NonNull
+        @Override
+        public ImageHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            ImageHolder holder = new ImageHolder(new ImageItem(parent.getContext(),
+                insertButtonBackground.getConstantState().newDrawable(),
+                deleteButtonBackground.getConstantState().newDrawable()));
+            // 点击时读取当前的adapter位置，插入/删除后无需重新绑定监听器
+            holder.item.setOnInsertClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position != NO_POSITION && actionListener != null) {
                     actionListener.onInsertBefore(position);
                 }
             });
-            item.setOnDeleteClickListener(v -> {
-                if (actionListener != null) {
+            holder.item.setOnDeleteClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position != NO_POSITION && actionListener != null) {
                     actionListener.onDelete(position);
                 }
             });
-            
-            imageItems.add(item);
-            addView(item);
-            
-            // 添加间距
-            if (i < images.size() - 1 && spacing > 0) {
-                View spacer = new View(getContext());
-                LayoutParams params = stitchMode == StitchMode.HORIZONTAL ?
-                    new LayoutParams(spacing, LayoutParams.MATCH_PARENT) :
-                    new LayoutParams(LayoutParams.MATCH_PARENT, spacing);
-                spacer.setLayoutParams(params);
-                addView(spacer);
-            }
+            return holder;
         }
-    }
-    
-    /**
-     * 导出为Bitmap
-     */
-    public Bitmap exportBitmap() {
-        // 隐藏所有按钮，只导出图片
-        for (ImageItem item : imageItems) {
-            item.hideButtons();
+
+        @Override
+        public void onBindViewHolder(@NonNull ImageHolder holder, int position) {
+            holder.item.setImage(images.get(position), stitchMode);
         }
-        
-        measure(
-            MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
-            MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
-        );
-        
-        layout(0, 0, getMeasuredWidth(), getMeasuredHeight());
-        
-        Bitmap bitmap = Bitmap.createBitmap(
-            getMeasuredWidth(), 
-            getMeasuredHeight(), 
-            Bitmap.Config.ARGB_8888
-        );
-        Canvas canvas = new Canvas(bitmap);
-        draw(canvas);
-        
-        // 恢复按钮显示
-        for (ImageItem item : imageItems) {
-            item.showButtons();
+
+        @Override
+        public void onViewRecycled(@NonNull ImageHolder holder) {
+            // 离屏后释放对bitmap的引用
+            holder.item.clearImage();
+        }
+
+        @Override
+        public int getItemCount() {
+            return images.size();
         }
-        
-        return bitmap;
-    }
-    
-    public int getImageCount() {
-        return images.size();
     }
-    
-    public StitchMode getStitchMode() {
-        return stitchMode;
+
+    private static class ImageHolder extends ViewHolder {
+        final ImageItem item;
+
+        ImageHolder(ImageItem item) {
+            super(item);
+            this.item = item;
+        }
     }
-    
+
     /**
      * 单个图片项 - 包含图片和按钮
      */
@@ -210,12 +316,12 @@ public class StitchingView extends LinearLayout {
         private ImageView imageView;
         private View btnInsert, btnDelete;
         
-        public ImageItem(Context context) {
+        public ImageItem(Context context, Drawable insertBackground, Drawable deleteBackground) {
             super(context);
-            init();
+            init(insertBackground, deleteBackground);
         }
         
-        private void init() {
+        private void init(Drawable insertBackground, Drawable deleteBackground) {
             imageView = new ImageView(getContext());
             imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
             addView(imageView, new FrameLayout.LayoutParams(
@@ -224,7 +330,7 @@ public class StitchingView extends LinearLayout {
             ));
             
             // 插入按钮 - 使用圆形背景的View
-            btnInsert = createRoundButton("+", 0xFF4CAF50);  // 绿色
+            btnInsert = createRoundButton("+", insertBackground);
             FrameLayout.LayoutParams insertParams = new FrameLayout.LayoutParams(
                 dpToPx(48),
                 dpToPx(48)
@@ -234,7 +340,7 @@ public class StitchingView extends LinearLayout {
             addView(btnInsert, insertParams);
             
             // 删除按钮 - 使用圆形背景的View
-            btnDelete = createRoundButton("×", 0xFF757575);  // 深灰色
+            btnDelete = createRoundButton("×", deleteBackground);
             FrameLayout.LayoutParams deleteParams = new FrameLayout.LayoutParams(
                 dpToPx(48),
                 dpToPx(48)
@@ -245,14 +351,11 @@ public class StitchingView extends LinearLayout {
             addView(btnDelete, deleteParams);
         }
         
-        private View createRoundButton(String text, int backgroundColor) {
+        private View createRoundButton(String text, Drawable background) {
             FrameLayout button = new FrameLayout(getContext());
             
             // 设置圆形背景
-            GradientDrawable drawable = new GradientDrawable();
-            drawable.setShape(GradientDrawable.OVAL);
-            drawable.setColor(backgroundColor);
-            button.setBackground(drawable);
+            button.setBackground(background);
             
             // 添加文字
             TextView textView = new TextView(getContext());
@@ -278,22 +381,41 @@ public class StitchingView extends LinearLayout {
         }
         
         public void setImage(Bitmap bitmap, StitchMode mode) {
-            if (bitmap == null) return;
+            // 跳过无效的bitmap
+            if (bitmap == null || bitmap.isRecycled()) {
+                clearImage();
+                setItemSize(0, 0);
+                return;
+            }
             
             imageView.setImageBitmap(bitmap);
             
             // 根据模式调整布局参数
-            LinearLayout.LayoutParams params;
             if (mode == StitchMode.HORIZONTAL) {
-                // 横拼：宽度wrap，高度match
-                int width = (int) (bitmap.getWidth() * 300.0f / bitmap.getHeight());
-                params = new LinearLayout.LayoutParams(width, 300);
+                // 横拼：宽度wrap，高度固定
+                setItemSize(getItemWidth(bitmap), PREVIEW_SIZE);
             } else {
                 // 竖拼：宽度match，高度wrap
-                int height = (int) (bitmap.getHeight() * 300.0f / bitmap.getWidth());
-                params = new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, height);
+                setItemSize(RecyclerView.LayoutParams.MATCH_PARENT, getItemHeight(bitmap));
+            }
+        }
+        
+        /**
+         * 复用RecyclerView已设置的LayoutParams，尺寸不变时不触发重新布局
+         */
+        private void setItemSize(int width, int height) {
+            ViewGroup.LayoutParams params = getLayoutParams();
+            if (params == null) {
+                setLayoutParams(new RecyclerView.LayoutParams(width, height));
+            } else if (params.width != width || params.height != height) {
+                params.width = width;
+                params.height = height;
+                setLayoutParams(params);
             }
-            setLayoutParams(params);
+        }
+
+        public void clearImage() {
+            imageView.setImageDrawable(null);
         }
         
         public void setOnInsertClickListener(OnClickListener listener) {
@@ -313,15 +435,5 @@ public class StitchingView extends LinearLayout {
                 }
             });
         }
-        
-        public void hideButtons() {
-            btnInsert.setVisibility(GONE);
-            btnDelete.setVisibility(GONE);
-        }
-        
-        public void showButtons() {
-            btnInsert.setVisibility(VISIBLE);
-            btnDelete.setVisibility(VISIBLE);
-        }
     }
 }
@@ -0,0 +1,113 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 格子点击索引的JVM单元测试：与线性扫描的结果对比（耗时对比见androidTest中的CellHitIndexBenchmark）
+ */
+class CellHitIndexTest {
+
+    private val width = 1080f
+    private val height = 1080f
+    private val spacing = 10f
+
+    /** 每个格子的 rowStart, rowEnd, colStart, colEnd */
+    private fun uniformGrid(rows: Int, columns: Int): IntArray {
+        val spans = IntArray(rows * columns * 4)
+        for (row in 0 until rows) {
+            for (column in 0 until columns) {
+                val i = (row * columns + column) * 4
+                spans[i] = row
+                spans[i + 1] = row + 1
+                spans[i + 2] = column
+                spans[i + 3] = column + 1
+            }
+        }
+        return spans
+    }
+
+    /** 视图中格子的实际bounds：left, top, right, bottom */
+    private fun bounds(spans: IntArray): FloatArray =
+        PackedLayout(spans).getBounds(width.toInt(), height.toInt(), spacing.toInt())
+
+    /** 原来的做法：逐个格子判断 */
+    private fun linearScan(rects: FloatArray, x: Float, y: Float): Int {
+        for (i in rects.indices step 4) {
+            if (x >= rects[i] && x < rects[i + 2] && y >= rects[i + 1] && y < rects[i + 3]) {
+                return i / 4
+            }
+        }
+        return -1
+    }
+
+    /** 视图中的做法：索引给出候选，再用边界确认 */
+    private fun indexed(index: CellHitIndex, rects: FloatArray, x: Float, y: Float): Int {
+        val candidate = index.findCandidate(x, y)
+        if (candidate < 0) return -1
+        val i = candidate * 4
+        return if (x >= rects[i] && x < rects[i + 2] && y >= rects[i + 1] && y < rects[i + 3]) candidate else -1
+    }
+
+    @Test
+    fun matchesLinearScanOnUniformGrid() {
+        val spans = uniformGrid(20, 20)
+        val rects = bounds(spans)
+        val index = CellHitIndex(spans, width, height, spacing)
+        val random = Random(7)
+        assertEquals(20, index.rowCount)
+        assertEquals(20, index.columnCount)
+
+        repeat(20_000) {
+            val x = random.nextFloat() * (width + 40) - 20
+            val y = random.nextFloat() * (height + 40) - 20
+            assertEquals(linearScan(rects, x, y), indexed(index, rects, x, y))
+        }
+    }
+
+    @Test
+    fun spanningCellCoversInnerSpacing() {
+        // 2×2网格：上面一个横跨两列的格子，下面两个单格
+        val spans = intArrayOf(0, 1, 0, 2, 1, 2, 0, 1, 1, 2, 1, 2)
+        val rects = bounds(spans)
+        val index = CellHitIndex(spans, width, height, spacing)
+
+        // 上方格子内部、两列之间原本是间距的位置
+        assertEquals(0, indexed(index, rects, width / 2, 100f))
+        // 下方两个格子之间的间距
+        assertEquals(-1, indexed(index, rects, width / 2, 800f))
+        assertEquals(1, indexed(index, rects, 100f, 800f))
+        assertEquals(2, indexed(index, rects, 1000f, 800f))
+        // 画布外
+        assertEquals(-1, index.findCandidate(-5f, 100f))
+        assertEquals(-1, index.findCandidate(100f, height + 5f))
+    }
+
+    @Test
+    fun matchesLinearScanWithTrackWeights() {
+        // 5×4网格，各行各列宽窄不一
+        val layout = PackedLayout(uniformGrid(5, 4))
+            .withTrackWeights(floatArrayOf(1f, 3f, 0.5f, 2f, 1f), floatArrayOf(4f, 1f, 1f, 2f))
+        val rects = layout.getBounds(width.toInt(), height.toInt(), spacing.toInt())
+        val index = CellHitIndex.fromLayout(layout, width.toInt(), height.toInt(), spacing.toInt())
+        val random = Random(9)
+
+        repeat(20_000) {
+            val x = random.nextFloat() * (width + 40) - 20
+            val y = random.nextFloat() * (height + 40) - 20
+            assertEquals(linearScan(rects, x, y), indexed(index, rects, x, y))
+        }
+    }
+
+    @Test
+    fun uncoveredGridUnitsHaveNoCandidate() {
+        // 3×3网格只放了对角线三个格子
+        val spans = intArrayOf(0, 1, 0, 1, 1, 2, 1, 2, 2, 3, 2, 3)
+        val index = CellHitIndex(spans, width, height, spacing)
+
+        assertEquals(-1, index.findCandidate(width * 5 / 6, height / 6))
+        assertEquals(1, index.findCandidate(width / 2, height / 2))
+    }
+}
@@ -0,0 +1,93 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * 布局编辑器撤销/重做的JVM单元测试
+ */
+class GridEditHistoryTest {
+
+    private fun merge(model: GridEditorModel, history: GridEditHistory, rows: IntRange, columns: IntRange) {
+        for (row in rows) for (column in columns) model.setSelected(row, column, true)
+        history.recordAdded(model, model.mergeSelection())
+    }
+
+    private fun snapshot(model: GridEditorModel) = model.getSpans(0, model.cellCount)
+
+    @Test
+    fun undoAndRedoMergeFillAndDelete() {
+        val model = GridEditorModel(8, 8)
+        val history = GridEditHistory()
+        val states = mutableListOf(snapshot(model))
+
+        merge(model, history, 0..3, 0..3)
+        states.add(snapshot(model))
+        val firstFilled = model.cellCount
+        model.autoFill()
+        history.recordAdded(model, firstFilled)
+        states.add(snapshot(model))
+        history.recordRemoved(model.removeLastCell())
+        states.add(snapshot(model))
+
+        for (i in states.size - 2 downTo 0) {
+            assertTrue(history.undo(model))
+            assertArrayEquals(states[i], snapshot(model))
+        }
+        assertFalse(history.undo(model))
+        assertFalse(model.isOccupied(0, 0))
+
+        for (i in 1 until states.size) {
+            assertTrue(history.redo(model))
+            assertArrayEquals(states[i], snapshot(model))
+        }
+        assertFalse(history.redo(model))
+    }
+
+    @Test
+    fun undoResetRestoresAllCells() {
+        val model = GridEditorModel(4, 4)
+        val history = GridEditHistory()
+        merge(model, history, 0..1, 0..3)
+        merge(model, history, 2..3, 0..1)
+        val before = snapshot(model)
+
+        history.recordRemoved(model.getSpans(0, model.cellCount))
+        model.reset()
+        assertEquals(0, model.cellCount)
+
+        assertTrue(history.undo(model))
+        assertArrayEquals(before, snapshot(model))
+        assertTrue(model.isOccupied(3, 1))
+    }
+
+    @Test
+    fun newEditClearsRedo() {
+        val model = GridEditorModel(4, 4)
+        val history = GridEditHistory()
+        merge(model, history, 0..1, 0..1)
+        history.undo(model)
+        assertTrue(history.canRedo())
+
+        merge(model, history, 2..3, 2..3)
+        assertFalse(history.canRedo())
+    }
+
+    @Test
+    fun historyIsCapped() {
+        val model = GridEditorModel(GridEditorModel.MAX_SIZE, GridEditorModel.MAX_SIZE)
+        val history = GridEditHistory(10)
+        // 反复填充再重置，远超上限的步数
+        repeat(500) {
+            model.autoFill()
+            history.recordAdded(model, 0)
+            history.recordRemoved(model.getSpans(0, model.cellCount))
+            model.reset()
+        }
+
+        var undone = 0
+        while (history.undo(model)) undone++
+        assertEquals(10, undone)
+    }
+}
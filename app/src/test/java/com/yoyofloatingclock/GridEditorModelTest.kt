@@ -0,0 +1,198 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 布局编辑器模型的JVM单元测试
+ */
+class GridEditorModelTest {
+
+    private fun select(model: GridEditorModel, rows: IntRange, columns: IntRange) {
+        for (row in rows) for (column in columns) model.setSelected(row, column, true)
+    }
+
+    @Test
+    fun mergesRectangularSelection() {
+        val model = GridEditorModel(6, 6)
+        select(model, 1..2, 2..4)
+
+        assertEquals(6, model.selectedCount)
+        assertArrayEquals(intArrayOf(1, 3, 2, 5), model.selectionBounds)
+        assertEquals(0, model.mergeSelection())
+        assertEquals(0, model.selectedCount)
+        assertTrue(model.isOccupied(2, 4))
+        assertFalse(model.isOccupied(3, 4))
+        val cell = model.cells[0]
+        assertEquals(1, cell.rowStart)
+        assertEquals(3, cell.rowEnd)
+        assertEquals(2, cell.colStart)
+        assertEquals(5, cell.colEnd)
+    }
+
+    @Test
+    fun rejectsNonRectangularSelection() {
+        // L形3格 + 外接矩形里的另一格
+        val model = GridEditorModel(6, 6)
+        model.setSelected(0, 0, true)
+        model.setSelected(0, 1, true)
+        model.setSelected(1, 0, true)
+        model.setSelected(2, 2, true)
+        assertFalse(model.canMergeSelection())
+
+        // 数量与外接矩形面积相等，但有一格已被占用
+        val occupied = GridEditorModel(4, 4)
+        occupied.addCell(1, 2, 1, 2)
+        select(occupied, 0..1, 0..1)
+        assertEquals(3, occupied.selectedCount)
+        assertFalse(occupied.canMergeSelection())
+        assertEquals(-1, occupied.mergeSelection())
+        assertEquals(1, occupied.cellCount)
+    }
+
+    @Test
+    fun singleCellCannotBeMerged() {
+        val model = GridEditorModel(4, 4)
+        model.toggle(2, 2)
+
+        assertFalse(model.canMergeSelection())
+    }
+
+    @Test
+    fun occupiedCellsCannotBeSelected() {
+        val model = GridEditorModel(4, 4)
+        model.addCell(0, 2, 0, 2)
+
+        assertFalse(model.toggle(1, 1))
+        assertFalse(model.isSelected(1, 1))
+        assertFalse(model.toggle(-1, 0))
+        assertFalse(model.toggle(0, 4))
+    }
+
+    @Test
+    fun removeLastCellFreesItsArea() {
+        val model = GridEditorModel(4, 4)
+        model.addCell(0, 2, 0, 2)
+        model.addCell(2, 4, 0, 4)
+
+        assertArrayEquals(intArrayOf(2, 4, 0, 4), model.removeLastCell())
+        assertFalse(model.isOccupied(3, 3))
+        assertTrue(model.isOccupied(1, 1))
+        assertEquals(1, model.cellCount)
+    }
+
+    @Test
+    fun autoFillCoversRemainingSquares() {
+        val model = GridEditorModel(32, 32)
+        model.addCell(0, 16, 0, 16)
+
+        assertEquals(32 * 32 - 16 * 16, model.autoFill())
+        assertTrue(model.isFull)
+        assertEquals(1 + 32 * 32 - 16 * 16, model.toLayout().cellCount)
+    }
+
+    @Test
+    fun largestGridUsesAllColumns() {
+        val model = GridEditorModel(GridEditorModel.MAX_SIZE, GridEditorModel.MAX_SIZE)
+        select(model, 0 until GridEditorModel.MAX_SIZE, 0 until GridEditorModel.MAX_SIZE)
+
+        assertEquals(0, model.mergeSelection())
+        assertTrue(model.isFull)
+        assertArrayEquals(
+            intArrayOf(0, GridEditorModel.MAX_SIZE, 0, GridEditorModel.MAX_SIZE),
+            model.toLayout().spans()
+        )
+    }
+
+    /** 穷举求剩余空格中满足约束的最大矩形面积 */
+    private fun largestFreeRectangle(model: GridEditorModel, cap: Int, maxAspect: Float): Int {
+        var best = 0
+        for (top in 0 until model.rows) for (left in 0 until model.columns)
+            for (bottom in top + 1..model.rows) for (right in left + 1..model.columns) {
+                val height = bottom - top
+                val width = right - left
+                if (height * width > cap || height * width <= best) continue
+                if (maxAspect != 0f && maxOf(height, width) > maxAspect * minOf(height, width)) continue
+                val free = (top until bottom).all { row -> (left until right).none { model.isOccupied(row, it) } }
+                if (free) best = height * width
+            }
+        return best
+    }
+
+    @Test
+    fun rectangleFillPlacesLargestRectangleFirst() {
+        val random = Random(4)
+        repeat(200) {
+            val model = GridEditorModel(2 + random.nextInt(9), 2 + random.nextInt(9))
+            repeat(random.nextInt(8)) {
+                val row = random.nextInt(model.rows)
+                val column = random.nextInt(model.columns)
+                if (!model.isOccupied(row, column)) model.addCell(row, row + 1, column, column + 1)
+            }
+            var free = 0
+            for (row in 0 until model.rows) for (column in 0 until model.columns) {
+                if (!model.isOccupied(row, column)) free++
+            }
+            if (free == 0) return@repeat
+            val target = if (random.nextBoolean()) 0 else 2 + random.nextInt(10)
+            val maxAspect = if (random.nextBoolean()) 0f else 1f + random.nextInt(3) * 0.5f
+            val cap = if (target == 0) free else (free + maxOf(1, target - model.cellCount) - 1) / maxOf(1, target - model.cellCount)
+            val expected = largestFreeRectangle(model, cap, maxAspect)
+
+            val first = model.cellCount
+            model.autoFillRectangles(target, maxAspect)
+
+            val area = (model.getRowEnd(first) - model.getRowStart(first)) *
+                (model.getColEnd(first) - model.getColStart(first))
+            assertEquals(expected, area)
+            assertTrue(model.isFull)
+        }
+    }
+
+    @Test
+    fun rectangleFillRespectsAspectLimit() {
+        // 不限时是一整块4×12，限制为2:1后先放4×8，剩下4×4
+        val model = GridEditorModel(4, 12)
+        model.autoFillRectangles(0, 2f)
+
+        assertArrayEquals(intArrayOf(0, 4, 0, 8, 0, 4, 8, 12), model.getSpans(0, model.cellCount))
+    }
+
+    @Test
+    fun rectangleFillApproachesTargetCount() {
+        val model = GridEditorModel(6, 6)
+        model.autoFillRectangles(4, 0f)
+
+        assertEquals(4, model.cellCount)
+        assertTrue(model.isFull)
+    }
+
+    @Test
+    fun rectangleFillCoversLargestGridWithinAspectLimit() {
+        // 实时填充用的参数；耗时见androidTest中的GridEditorFillBenchmark
+        val model = GridEditorModel(GridEditorModel.MAX_SIZE, GridEditorModel.MAX_SIZE)
+        model.autoFillRectangles(20, 2f)
+
+        assertTrue(model.isFull)
+        val spans = model.getSpans(0, model.cellCount)
+        for (i in spans.indices step 4) {
+            val height = spans[i + 1] - spans[i]
+            val width = spans[i + 3] - spans[i + 2]
+            assertTrue("格子$i: ${height}×$width", maxOf(height, width) <= 2 * minOf(height, width))
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsOverlappingCell() {
+        val model = GridEditorModel(4, 4)
+        model.addCell(0, 2, 0, 2)
+        model.addCell(1, 3, 1, 3)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsOversizedGrid() {
+        GridEditorModel(GridEditorModel.MAX_SIZE + 1, 4)
+    }
+}
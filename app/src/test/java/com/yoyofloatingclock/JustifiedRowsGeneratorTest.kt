@@ -0,0 +1,79 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 两端对齐行布局的JVM单元测试
+ */
+class JustifiedRowsGeneratorTest {
+
+    private fun randomAspects(count: Int, seed: Long): FloatArray {
+        val random = Random(seed)
+        return FloatArray(count) { 0.5f + random.nextFloat() * 1.5f }
+    }
+
+    @Test
+    fun rowsTileTheCanvasExactly() {
+        val aspects = randomAspects(60, 1)
+        val layout = JustifiedRowsGenerator.generate(aspects, 1.5f)
+        val bounds = FloatArray(aspects.size * 4)
+        layout.computeBounds(1500, 1000, 0, bounds)
+
+        assertTrue(layout.isFractional)
+        assertEquals(aspects.size, layout.cellCount)
+        var area = 0.0
+        for (cell in 0 until layout.cellCount) {
+            val i = cell * 4
+            area += (bounds[i + 2] - bounds[i]) * (bounds[i + 3] - bounds[i + 1])
+            // 同一行内相邻格子首尾相接
+            if (cell + 1 < layout.cellCount && layout.getRowStart(cell + 1) == layout.getRowStart(cell)) {
+                assertEquals(bounds[i + 2], bounds[i + 4], 0.01f)
+            }
+        }
+        assertEquals(1500.0 * 1000.0, area, 1.0)
+    }
+
+    @Test
+    fun photosKeepTheirOrderAndRoughAspect() {
+        val aspects = randomAspects(200, 2)
+        val layout = JustifiedRowsGenerator.generate(aspects, 1f)
+        val bounds = layout.getBounds(1000, 1000, 0)
+
+        var previousRow = 0
+        for (cell in 0 until layout.cellCount) {
+            val row = layout.getRowStart(cell)
+            assertTrue(row == previousRow || row == previousRow + 1)
+            previousRow = row
+            val i = cell * 4
+            val cellAspect = (bounds[i + 2] - bounds[i]) / (bounds[i + 3] - bounds[i + 1])
+            // 统一缩放行高只带来少量裁切
+            assertEquals(1f, cellAspect / aspects[cell], 0.2f)
+        }
+    }
+
+    @Test
+    fun respectsMaxPerRow() {
+        val layout = JustifiedRowsGenerator.generate(randomAspects(30, 3), 1f, 3)
+
+        for (cell in 0 until layout.cellCount) {
+            assertTrue(layout.getColEnd(cell) <= 3)
+        }
+    }
+
+    @Test
+    fun spacingMatchesGridGeometry() {
+        // 两张等宽图片排成一行时与1×2网格的bounds相同
+        val justified = JustifiedRowsGenerator.generate(floatArrayOf(1f, 1f), 2f)
+        val grid = PackedLayout(intArrayOf(0, 1, 0, 1, 0, 1, 1, 2))
+
+        assertArrayEquals(grid.getBounds(410, 210, 10), justified.getBounds(410, 210, 10), 0.01f)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsTooManyPhotos() {
+        JustifiedRowsGenerator.generate(FloatArray(JustifiedRowsGenerator.MAX_PHOTOS + 1) { 1f }, 1f)
+    }
+}
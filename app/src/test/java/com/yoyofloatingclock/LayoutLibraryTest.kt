@@ -0,0 +1,121 @@
+package com.yoyofloatingclock
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import org.junit.Assert.*
+import java.io.File
+
+/**
+ * 自定义布局库的JVM单元测试：编码往返、索引重建、损坏文件（1000个布局的列表耗时见androidTest中的LayoutLibraryBenchmark）
+ */
+class LayoutLibraryTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun grid(rows: Int, columns: Int): PackedLayout {
+        val model = GridEditorModel(rows, columns)
+        model.addCell(0, rows / 2, 0, columns)
+        model.autoFill()
+        return model.toLayout()
+    }
+
+    @Test
+    fun savedLayoutRoundTrips() {
+        val directory = folder.newFolder()
+        val layout = grid(32, 32)
+        val entry = LayoutLibrary(directory).save("测试布局", layout)
+
+        // 新实例从磁盘读取
+        val reopened = LayoutLibrary(directory)
+        val listed = reopened.list().single()
+        assertEquals(entry.id, listed.id)
+        assertEquals("测试布局", listed.name)
+        assertEquals(layout.cellCount, listed.cellCount)
+        assertEquals(32, listed.rows)
+        assertEquals(32, listed.columns)
+        assertArrayEquals(layout.spans(), reopened.load(entry.id)!!.spans())
+
+        // 每个格子4个字节左右
+        val file = File(directory, "${entry.id}.layout")
+        assertTrue(file.length() < 32 + layout.cellCount * 4L)
+    }
+
+    @Test
+    fun rebuildsMissingIndex() {
+        val directory = folder.newFolder()
+        val library = LayoutLibrary(directory)
+        val first = library.save("a", grid(2, 2))
+        val second = library.save("b", grid(4, 3))
+        File(directory, "index.bin").writeBytes(byteArrayOf(1, 2, 3))
+
+        val reopened = LayoutLibrary(directory)
+        assertEquals(listOf(first.id, second.id), reopened.list().map { it.id })
+        // 重建后新的id不会与已有的重复
+        assertTrue(reopened.save("c", grid(2, 2)).id > second.id)
+    }
+
+    @Test
+    fun deleteRemovesEntryAndFile() {
+        val directory = folder.newFolder()
+        val library = LayoutLibrary(directory)
+        val first = library.save("a", grid(2, 2))
+        val second = library.save("b", grid(3, 3))
+
+        assertTrue(library.delete(first.id))
+        assertFalse(library.delete(first.id))
+        assertNull(library.load(first.id))
+        assertEquals(listOf(second.id), LayoutLibrary(directory).list().map { it.id })
+    }
+
+    @Test
+    fun corruptedCellCountReturnsNull() {
+        val directory = folder.newFolder()
+        val library = LayoutLibrary(directory)
+        val entry = library.save("a", grid(2, 2))
+
+        // 格子数远大于剩余字节（或转成int后为负）时不分配数组，直接当作损坏
+        for (cellCount in listOf(Int.MAX_VALUE.toLong(), 0xFFFFFFFFL, 1000L)) {
+            val out = java.io.ByteArrayOutputStream()
+            LayoutLibrary.writeVarint(out, 0x594C4C59)
+            LayoutLibrary.writeVarint(out, 1)
+            LayoutLibrary.writeVarint(out, entry.id)
+            LayoutLibrary.writeVarint(out, entry.createdAt)
+            LayoutLibrary.writeVarint(out, 1)
+            out.write('a'.code)
+            LayoutLibrary.writeVarint(out, cellCount)
+            LayoutLibrary.writeVarint(out, 2)
+            LayoutLibrary.writeVarint(out, 2)
+            out.write(ByteArray(16))
+            File(directory, "${entry.id}.layout").writeBytes(out.toByteArray())
+            assertNull(library.load(entry.id))
+        }
+    }
+
+    @Test
+    fun rejectsWeightedLayout() {
+        val weighted = grid(2, 2).withTrackWeights(floatArrayOf(2f, 1f), null)
+
+        try {
+            LayoutLibrary(folder.newFolder()).save("w", weighted)
+            fail()
+        } catch (expected: IllegalArgumentException) {
+        }
+    }
+
+    @Test
+    fun listsThousandLayoutsFromIndex() {
+        val directory = folder.newFolder()
+        val library = LayoutLibrary(directory)
+        val layout = grid(8, 8)
+        repeat(1000) { library.save("布局$it", layout) }
+
+        val entries = LayoutLibrary(directory).list()
+        assertEquals(1000, entries.size)
+        assertEquals("布局0", entries.first().name)
+        assertEquals("布局999", entries.last().name)
+        assertEquals(layout.cellCount, entries.last().cellCount)
+    }
+}
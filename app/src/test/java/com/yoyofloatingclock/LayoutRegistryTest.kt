@@ -0,0 +1,33 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * 进程内布局传递的JVM单元测试
+ */
+class LayoutRegistryTest {
+
+    private val layout = PackedLayout(intArrayOf(0, 1, 0, 1, 0, 1, 1, 2))
+
+    @Test
+    fun takeReturnsSameLayoutOnce() {
+        val token = LayoutRegistry.register(layout)
+
+        assertTrue(token > 0)
+        assertSame(layout, LayoutRegistry.take(token))
+        assertNull(LayoutRegistry.take(token))
+        assertNull(LayoutRegistry.take(0))
+    }
+
+    @Test
+    fun keepsOnlyRecentUnclaimedLayouts() {
+        val tokens = (0..LayoutRegistry.MAX_PENDING).map { LayoutRegistry.register(layout) }
+
+        assertNull(LayoutRegistry.take(tokens.first()))
+        for (token in tokens.drop(1)) {
+            assertSame(layout, LayoutRegistry.take(token))
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 自动选择布局的JVM单元测试：与穷举所有候选和排列的结果对比（9张图片的耗时见androidTest中的LayoutSolverBenchmark）
+ */
+class LayoutSolverTest {
+
+    /** 与LayoutSolver相同的损失定义，按给定的图片顺序计算 */
+    private fun loss(layout: PackedLayout, aspects: FloatArray, order: IntArray, canvasAspect: Float): Float {
+        var total = 0f
+        for (cell in 0 until layout.cellCount) {
+            val width = layout.getColumnEdge(layout.getColEnd(cell)) - layout.getColumnEdge(layout.getColStart(cell))
+            val height = layout.getRowEdge(layout.getRowEnd(cell)) - layout.getRowEdge(layout.getRowStart(cell))
+            total += width * height * LayoutSolver.cropLoss(width * canvasAspect / height, aspects[order[cell]])
+        }
+        return total
+    }
+
+    private fun permutations(n: Int): List<IntArray> {
+        if (n == 0) return listOf(IntArray(0))
+        return permutations(n - 1).flatMap { rest ->
+            (0..rest.size).map { position ->
+                val list = rest.toMutableList()
+                list.add(position, n - 1)
+                list.toIntArray()
+            }
+        }
+    }
+
+    private fun bruteForce(aspects: FloatArray, canvasAspect: Float): Float {
+        val candidates = PuzzleLayoutEnhanced.getVariantsForCount(aspects.size).map { it.layout } +
+            LayoutSolver.generatePartitions(aspects.size)
+        val orders = permutations(aspects.size)
+        return candidates.minOf { layout -> orders.minOf { loss(layout, aspects, it, canvasAspect) } }
+    }
+
+    @Test
+    fun matchesBruteForce() {
+        val random = Random(3)
+        repeat(100) {
+            val aspects = FloatArray(2 + random.nextInt(5)) { 0.4f + random.nextFloat() * 2f }
+            val canvasAspect = 0.5f + random.nextFloat() * 1.5f
+            val result = LayoutSolver.solve(aspects, canvasAspect)!!
+
+            assertEquals(bruteForce(aspects, canvasAspect), result.cropLoss, 1e-4f)
+            // 返回的摆放顺序确实达到报告的损失
+            assertEquals(result.cropLoss, loss(result.layout, aspects, result.photoForCell, canvasAspect), 1e-4f)
+            assertEquals(aspects.size, result.photoForCell.distinct().size)
+        }
+    }
+
+    @Test
+    fun squarePhotosFitSquareGridWithoutCrop() {
+        val result = LayoutSolver.solve(FloatArray(9) { 1f }, 1f)!!
+
+        assertEquals(0f, result.cropLoss, 1e-6f)
+        assertEquals(3, result.layout.rowCount)
+        assertEquals(3, result.layout.columnCount)
+    }
+
+    @Test
+    fun tallPhotoGoesToNarrowestCell() {
+        // 一张竖图、两张横图：竖图所在格子的宽高比不应大于任何一张横图的格子
+        val result = LayoutSolver.solve(floatArrayOf(0.5f, 2f, 2f), 1f)!!
+        val layout = result.layout
+        fun cellAspect(cell: Int) =
+            (layout.getColumnEdge(layout.getColEnd(cell)) - layout.getColumnEdge(layout.getColStart(cell))) /
+                (layout.getRowEdge(layout.getRowEnd(cell)) - layout.getRowEdge(layout.getRowStart(cell)))
+
+        val tallCellAspect = cellAspect(result.photoForCell.indexOf(0))
+        assertTrue(tallCellAspect <= cellAspect(result.photoForCell.indexOf(1)))
+        assertTrue(tallCellAspect <= cellAspect(result.photoForCell.indexOf(2)))
+    }
+
+    @Test
+    fun rejectsUnsupportedInput() {
+        assertNull(LayoutSolver.solve(FloatArray(0), 1f))
+        assertNull(LayoutSolver.solve(FloatArray(LayoutSolver.MAX_PHOTOS + 1) { 1f }, 1f))
+        assertNull(LayoutSolver.solve(floatArrayOf(1f, 1f), 0f))
+    }
+
+    @Test
+    fun solvesNinePhotosWithConsistentResult() {
+        // 9张图片超出穷举对比的范围，只检查结果自洽
+        val random = Random(5)
+        val aspects = FloatArray(9) { 0.4f + random.nextFloat() * 2f }
+        val result = LayoutSolver.solve(aspects, 1f)!!
+
+        assertEquals(9, result.layout.cellCount)
+        assertEquals(9, result.photoForCell.distinct().size)
+        assertEquals(result.cropLoss, loss(result.layout, aspects, result.photoForCell, 1f), 1e-4f)
+    }
+}
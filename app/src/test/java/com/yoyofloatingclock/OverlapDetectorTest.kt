@@ -0,0 +1,143 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+
+/**
+ * 长截图重叠检测的JVM单元测试，用合成的"网页 + 固定状态栏/导航栏"截图验证
+ */
+class OverlapDetectorTest {
+
+    private val width = 24
+    private val viewHeight = 300
+    private val headerRows = 30
+    private val footerRows = 20
+
+    private val page: IntArray = Random(42).let { random ->
+        IntArray(width * 2000) { random.nextInt() }
+    }
+
+    /** 模拟在页面滚动到scrollY处截的一张屏 */
+    private fun screenshot(scrollY: Int): IntArray {
+        val pixels = IntArray(width * viewHeight)
+        for (y in 0 until viewHeight) {
+            for (x in 0 until width) {
+                pixels[y * width + x] = when {
+                    y < headerRows -> 0x101010 * (y % 5)
+                    y >= viewHeight - footerRows -> 0x202020 + y
+                    else -> page[(scrollY + y - headerRows) * width + x]
+                }
+            }
+        }
+        return pixels
+    }
+
+    @Test
+    fun detectsScrolledOverlapAndFixedBars() {
+        val first = screenshot(0)
+        val second = screenshot(180)
+
+        val result = OverlapDetector().detect(first, viewHeight, second, viewHeight, width)
+
+        // 内容区高度250，滚动180，重叠70行
+        assertTrue(result.hasOverlap())
+        assertEquals(headerRows, result.headerRows)
+        assertEquals(footerRows, result.footerRows)
+        assertEquals(70, result.overlapRows)
+        assertEquals(footerRows, result.trimBottomOfFirst)
+        assertEquals(headerRows + 70, result.trimTopOfSecond)
+    }
+
+    @Test
+    fun noOverlapWhenScrolledPastViewport() {
+        val result = OverlapDetector().detect(screenshot(0), viewHeight, screenshot(600), viewHeight, width)
+
+        assertFalse(result.hasOverlap())
+        assertEquals(0, result.trimTopOfSecond)
+        assertEquals(0, result.trimBottomOfFirst)
+    }
+
+    @Test
+    fun identicalImagesAreNotTreatedAsOverlap() {
+        val shot = screenshot(100)
+
+        val result = OverlapDetector().detect(shot, viewHeight, shot.copyOf(), viewHeight, width)
+
+        assertFalse(result.hasOverlap())
+    }
+
+    @Test
+    fun toleratesSmallCompressionNoise() {
+        val first = screenshot(0)
+        // 低位噪声会被量化掉
+        val second = screenshot(200).map { it xor 0x030303 }.toIntArray()
+
+        val result = OverlapDetector().detect(first, viewHeight, second, viewHeight, width)
+
+        assertEquals(50, result.overlapRows)
+    }
+
+    /** 让每个通道在0x0F/0x10这类量化边界上来回跳1，量化后的行哈希全都不同 */
+    private fun crossBoundaries(color: Int): Int {
+        var result = color and 0xFF000000.toInt()
+        for (shift in intArrayOf(0, 8, 16)) {
+            val channel = (color shr shift) and 0xFF
+            val noisy = when (channel and 0x0F) {
+                0x0F -> if (channel == 0xFF) channel - 1 else channel + 1
+                0x00 -> if (channel == 0) 1 else channel - 1
+                else -> channel
+            }
+            result = result or (noisy shl shift)
+        }
+        return result
+    }
+
+    @Test
+    fun toleratesNoiseAcrossQuantizationBoundaries() {
+        val first = screenshot(0)
+        val second = screenshot(200).map { crossBoundaries(it) }.toIntArray()
+
+        val result = OverlapDetector().detect(first, viewHeight, second, viewHeight, width)
+
+        assertEquals(headerRows, result.headerRows)
+        assertEquals(footerRows, result.footerRows)
+        assertEquals(50, result.overlapRows)
+    }
+
+    @Test
+    fun toleratesRandomNoiseOfTwoLevels() {
+        val random = Random(7)
+        val first = screenshot(0)
+        val second = screenshot(180).map { color ->
+            var result = color and 0xFF000000.toInt()
+            for (shift in intArrayOf(0, 8, 16)) {
+                val channel = ((color shr shift) and 0xFF) + random.nextInt(5) - 2
+                result = result or (channel.coerceIn(0, 255) shl shift)
+            }
+            result
+        }.toIntArray()
+
+        val result = OverlapDetector().detect(first, viewHeight, second, viewHeight, width)
+
+        assertEquals(70, result.overlapRows)
+        assertEquals(headerRows + 70, result.trimTopOfSecond)
+    }
+
+    @Test
+    fun noisyImagesWithoutOverlapAreNotMatched() {
+        val second = screenshot(600).map { crossBoundaries(it) }.toIntArray()
+
+        val result = OverlapDetector().detect(screenshot(0), viewHeight, second, viewHeight, width)
+
+        assertFalse(result.hasOverlap())
+    }
+
+    @Test
+    fun overlapBelowMinimumIsIgnored() {
+        val result = OverlapDetector(64).detect(screenshot(0), viewHeight, screenshot(200), viewHeight, width)
+
+        assertFalse(result.hasOverlap())
+    }
+}
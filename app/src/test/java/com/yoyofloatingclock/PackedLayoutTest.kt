@@ -0,0 +1,85 @@
+package com.yoyofloatingclock
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * 紧凑布局的JVM单元测试
+ */
+class PackedLayoutTest {
+
+    // 上1下2：上方横跨两列，下方两个单格
+    private val topOne = intArrayOf(0, 1, 0, 2, 1, 2, 0, 1, 1, 2, 1, 2)
+
+    @Test
+    fun computesBoundsWithSpacing() {
+        val layout = PackedLayout(topOne)
+        val bounds = layout.getBounds(210, 110, 10)
+
+        assertEquals(2, layout.rowCount)
+        assertEquals(2, layout.columnCount)
+        // 单元格 90×40
+        assertArrayEquals(floatArrayOf(10f, 10f, 200f, 50f), bounds.copyOfRange(0, 4), 0.001f)
+        assertArrayEquals(floatArrayOf(10f, 60f, 100f, 100f), bounds.copyOfRange(4, 8), 0.001f)
+        assertArrayEquals(floatArrayOf(110f, 60f, 200f, 100f), bounds.copyOfRange(8, 12), 0.001f)
+    }
+
+    @Test
+    fun weightedTracksMatchSpanningUniformGrid() {
+        // 2:1的两列与3列网格中左格横跨两列的几何相同
+        val weighted = PackedLayout(intArrayOf(0, 1, 0, 1, 0, 1, 1, 2)).withTrackWeights(null, floatArrayOf(2f, 1f))
+        val spanning = PackedLayout(intArrayOf(0, 1, 0, 2, 0, 1, 2, 3))
+
+        assertTrue(weighted.hasTrackWeights())
+        assertArrayEquals(spanning.getBounds(640, 300, 10), weighted.getBounds(640, 300, 10), 0.01f)
+        assertArrayEquals(floatArrayOf(2f / 3f, 1f / 3f), weighted.columnWeights, 0.0001f)
+    }
+
+    @Test
+    fun weightsOnlyChangeTrackEdges() {
+        val layout = PackedLayout(topOne).withTrackWeights(floatArrayOf(1f, 3f), floatArrayOf(1f, 1f))
+        val bounds = layout.getBounds(210, 210, 10)
+
+        assertEquals(0.25f, layout.getRowEdge(1), 0.0001f)
+        // 上方一行占 (210 - 10) 的1/4，再减去一个间距
+        assertArrayEquals(floatArrayOf(10f, 10f, 200f, 50f), bounds.copyOfRange(0, 4), 0.001f)
+        assertArrayEquals(floatArrayOf(10f, 60f, 100f, 200f), bounds.copyOfRange(4, 8), 0.001f)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsWrongWeightCount() {
+        PackedLayout(topOne).withTrackWeights(floatArrayOf(1f), null)
+    }
+
+    @Test
+    fun boundsAreFreshCopiesForSharedLayouts() {
+        val layout = PackedLayout(topOne)
+        val first = layout.getBounds(300, 200, 4)
+        val expected = first.copyOf()
+        first.fill(-1f)
+
+        val second = layout.getBounds(300, 200, 4)
+        assertNotSame(first, second)
+        assertArrayEquals(expected, second, 0f)
+
+        val buffer = FloatArray(topOne.size)
+        layout.computeBounds(300, 200, 4, buffer)
+        assertArrayEquals(expected, buffer, 0f)
+    }
+
+    @Test
+    fun spansAreCopiedOnConstruction() {
+        val spans = topOne.copyOf()
+        val layout = PackedLayout(spans)
+        spans[1] = 5
+
+        assertEquals(1, layout.getRowEnd(0))
+        assertEquals(2, layout.rowCount)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsEmptySpan() {
+        PackedLayout(intArrayOf(0, 0, 0, 1))
+    }
+}